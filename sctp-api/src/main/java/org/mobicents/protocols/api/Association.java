@@ -22,8 +22,11 @@
 
 package org.mobicents.protocols.api;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 
+import java.util.Collection;
+
 
 
 /**
@@ -143,13 +146,75 @@ public interface Association {
 	public String[] getExtraHostAddresses();
 
 	/**
-	 * Send the {@link PayloadData} to the peer
+	 * Send the {@link PayloadData} to the peer. The PayloadData buffer is
+	 * released once it is sent. If an Exception is thrown, because the
+	 * Association is down or its transmit queue is full, the buffer is not
+	 * taken and the caller must release or resend it
 	 * 
 	 * @param payloadData
 	 * @throws Exception
 	 */
 	public void send(PayloadData payloadData) throws Exception;
 
+	/**
+	 * Send a complete message to the peer without creating a
+	 * {@link PayloadData} for it. The same as {@link #send(PayloadData)}
+	 * otherwise: the ByteBuf is released once it is sent, and stays with the
+	 * caller if an Exception is thrown
+	 * 
+	 * @param byteBuf
+	 *            the payload data
+	 * @param streamNumber
+	 *            the SCTP stream number
+	 * @param payloadProtocolId
+	 *            protocol ID of the data carried
+	 * @param unordered
+	 *            set to true if we don't care for oder
+	 * @throws Exception
+	 */
+	public void send(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean unordered) throws Exception;
+
+	/**
+	 * Send the {@link PayloadData} to the peer if the Association can accept
+	 * it now. Unlike {@link #send(PayloadData)} this method does not throw
+	 * when the Association is down, its transmit queue is full or it is not
+	 * {@link #isWritable()}, it returns false and the caller keeps the
+	 * ownership of the PayloadData buffer
+	 * 
+	 * @param payloadData
+	 * @return true if the PayloadData has been accepted for sending
+	 */
+	public boolean offer(PayloadData payloadData);
+
+	/**
+	 * Send the {@link PayloadData} messages to the peer in the order of the
+	 * collection and flush the underlying channel once for all of them. If a
+	 * message can not be accepted an Exception is thrown, the messages before
+	 * it are sent and the buffers of this message and of the ones after it
+	 * stay with the caller
+	 * 
+	 * @param payloadDatas
+	 * @throws Exception
+	 */
+	public void send(Collection<PayloadData> payloadDatas) throws Exception;
+
+	/**
+	 * Queue the {@link PayloadData} for sending without flushing the
+	 * underlying channel. The message is sent at the latest at the next
+	 * {@link #flush()} or with the next message sent by
+	 * {@link #send(PayloadData)}. If an Exception is thrown the buffer stays
+	 * with the caller
+	 * 
+	 * @param payloadData
+	 * @throws Exception
+	 */
+	public void write(PayloadData payloadData) throws Exception;
+
+	/**
+	 * Flush the messages queued by {@link #write(PayloadData)} to the peer
+	 */
+	public void flush();
+
     /**
      * Return ByteBufAllocator if the underlying Channel is netty or null if not
      *
@@ -164,6 +229,33 @@ public interface Association {
      */
     public int getCongestionLevel();
 
+    /**
+     * Return false if the data sent to this Association is queued over the
+     * high water mark and is not taken by the peer fast enough. A listener
+     * implementing {@link AssociationWritabilityListener} is notified when this
+     * changes
+     *
+     * @return
+     */
+    public boolean isWritable();
+
+    /**
+     * Return the count of connection attempts of a CLIENT Association since
+     * it was started or last up, 0 while it is up
+     *
+     * @return
+     */
+    public int getReconnectAttempts();
+
+    /**
+     * Return the time (as System.currentTimeMillis()) the next connection
+     * attempt of a CLIENT Association is scheduled for, or 0 if none is
+     * scheduled
+     *
+     * @return
+     */
+    public long getNextReconnectTime();
+
 	/**
 	 * Use this method only for accepting anonymous connections
 	 * from the ServerListener.onNewRemoteConnection() invoking
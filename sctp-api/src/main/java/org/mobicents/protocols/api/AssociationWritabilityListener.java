@@ -0,0 +1,53 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * <p>
+ * Optional extension of {@link AssociationListener}. If the listener
+ * registered for an {@link Association} also implements this interface it is
+ * notified when the Association stops accepting data without queueing and
+ * when it can take data again, so a sender can pause instead of polling
+ * {@link Association#isWritable()} or filling the transmit queue until
+ * {@link Association#send(PayloadData)} fails
+ * </p>
+ * <p>
+ * For netty Associations the state follows the channel writability (the
+ * outbound buffer water marks), for the NIO Associations the filling of the
+ * transmit queue. The callback comes from an IO thread, do not block there.
+ * </p>
+ */
+public interface AssociationWritabilityListener {
+
+	/**
+	 * Invoked when the writability of the Association has changed
+	 * 
+	 * @param association
+	 * @param writable
+	 *            false if the sent data is now queued over the high water
+	 *            mark, true once the queued data has dropped under the low
+	 *            water mark
+	 */
+	public void onWritabilityChanged(Association association, boolean writable);
+
+}
@@ -22,6 +22,7 @@
 
 package org.mobicents.protocols.sctp;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 
 import java.io.IOException;
@@ -32,11 +33,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
-import javolution.util.FastList;
 import javolution.xml.XMLFormat;
 import javolution.xml.stream.XMLStreamException;
 
@@ -44,6 +48,8 @@ import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.AssociationListener;
 import org.mobicents.protocols.api.AssociationType;
+import org.mobicents.protocols.api.AssociationWritabilityListener;
+import org.mobicents.protocols.api.CongestionListener;
 import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.ManagementEventListener;
 import org.mobicents.protocols.api.PayloadData;
@@ -59,6 +65,9 @@ public class AssociationImpl implements Association {
 
 	protected static final Logger logger = Logger.getLogger(AssociationImpl.class.getName());
 
+	// Wait for a free connection slot of Management, randomized by +-50%
+	private static final int CONNECT_SLOT_WAIT = 100;
+
 	private static final String NAME = "name";
 	private static final String SERVER_NAME = "serverName";
 	private static final String HOST_ADDRESS = "hostAddress";
@@ -72,6 +81,24 @@ public class AssociationImpl implements Association {
 	private static final String EXTRA_HOST_ADDRESS = "extraHostAddress";
 	private static final String EXTRA_HOST_ADDRESS_SIZE = "extraHostAddresseSize";
 
+	// Max count of buffers flushed by one gathering write for TCP
+	private static final int MAX_GATHERING_WRITE_BUFFERS = 128;
+
+	// txQueue filling (part of the message or byte limit, whichever is
+	// higher) for reaching congestion levels 1, 2, 3 and for backing to
+	// levels 0, 1, 2
+	private static final double[] CONG_QUEUE_FILL_THRESHOLD = new double[] { 0.5, 0.7, 0.9 };
+	private static final double[] CONG_QUEUE_FILL_BACK_TO_NORMAL_THRESHOLD = new double[] { 0.4, 0.6, 0.8 };
+
+	// txQueue filling over which the Association gets unwritable and under
+	// which it gets writable again, the same as for congestion level 1
+	private static final double TX_QUEUE_HIGH_WATER_MARK = CONG_QUEUE_FILL_THRESHOLD[0];
+	private static final double TX_QUEUE_LOW_WATER_MARK = CONG_QUEUE_FILL_BACK_TO_NORMAL_THRESHOLD[0];
+
+	// congestion level is recalculated not more often then once per this
+	// interval (except when txQueue gets full or empty)
+	private static final long CONG_MONITOR_INTERVAL = 500;
+
 	private String hostAddress;
 	private int hostPort;
 	private String peerAddress;
@@ -101,19 +128,83 @@ public class AssociationImpl implements Association {
 	// Is the Association up (connection is established)
 	protected volatile boolean up = false;
 
-	private int workerThreadTable[] = null;
+	// DispatchLane index of each stream. Written by the SelectorThread and
+	// read by the WorkerRebalancer
+	private volatile AtomicIntegerArray workerThreadTable = null;
+	// DispatchLanes the workerThreadTable indexes into
+	private volatile DispatchLane[] mappedLanes = null;
+	// messages of each stream published to a DispatchLane and not delivered
+	// yet, a stream can change lane only when this is 0
+	private volatile AtomicIntegerArray streamInFlight = null;
+	// messages of each stream published since the last WorkerRebalancer pass
+	private volatile AtomicIntegerArray streamTraffic = null;
+	// lane each stream is asked to move to by the WorkerRebalancer, -1 if none
+	private volatile AtomicIntegerArray streamMoveTo = null;
+
+	private TxQueue txQueue;
+
+	// Received bytes of a TCP Association with a MessageFramer which do not
+	// yet make a complete message. Only accessed by the SelectorThread
+	private ByteBuf rxCumulation = null;
+
+	// Parts of SCTP messages not yet completely received. Only accessed by
+	// the SelectorThread
+	private SctpReassembler sctpReassembler = null;
+
+	// Delay before connection attempts of a CLIENT Association, null to use
+	// the ReconnectPolicy of Management
+	private volatile ReconnectPolicy reconnectPolicy = null;
+	private volatile int reconnectAttempts = 0;
+	private volatile long nextReconnectTime = 0;
+	// true while this Association holds a connection slot of Management
+	private final AtomicBoolean connectInProgress = new AtomicBoolean();
+	// the connection attempt scheduled and not run yet, so a connection is
+	// never replaced by a stale attempt. Cleared by stop() which makes a
+	// still pending timer stale
+	private final AtomicReference<ChangeRequest> scheduledConnect = new AtomicReference<ChangeRequest>();
+
+	/**
+	 * true when OP_WRITE interest is requested (or already set) for txQueue
+	 * content. Only the sender that flips it from false to true asks the
+	 * SelectorThread to change interest ops and wakes it up.
+	 */
+	private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+
+	/**
+	 * Guards pending tx buffers and msgInfo which are used both by the
+	 * SelectorThread and, when direct send is enabled, by the sending thread
+	 */
+	private final ReentrantLock txLock = new ReentrantLock();
+
+	private volatile int congLevel = 0;
+
+	// queueing delay (nanoseconds) of the last message taken from txQueue
+	private volatile long lastTxQueueDelay = 0;
+
+	private volatile long lastCongestionMonitorTime = 0;
 
-	private ConcurrentLinkedQueue<PayloadData> txQueue = new ConcurrentLinkedQueue<PayloadData>();
+	private final Object congestionLock = new Object();
+
+	// false while txQueue is filled over TX_QUEUE_HIGH_WATER_MARK and not yet
+	// drained under TX_QUEUE_LOW_WATER_MARK
+	private final AtomicBoolean writable = new AtomicBoolean(true);
+
+	/**
+	 * NIO buffers of payloads taken from txQueue and not yet completely
+	 * written. Entries from txNioBufferIndex to txNioBufferCount are pending.
+	 * txNioBufferOwners holds the payload ByteBuf at the last NIO buffer of
+	 * each payload so it is released once written.
+	 */
+	private ByteBuffer[] txNioBuffers = new ByteBuffer[MAX_GATHERING_WRITE_BUFFERS];
+	private ByteBuf[] txNioBufferOwners = new ByteBuf[MAX_GATHERING_WRITE_BUFFERS];
+	private int txNioBufferIndex = 0;
+	private int txNioBufferCount = 0;
 
 	private ManagementImpl management;
 
 	private SctpChannel socketChannelSctp;
 	private SocketChannel socketChannelTcp;
 
-	// The buffer into which we'll read data when it's available
-	private ByteBuffer rxBuffer;
-	private ByteBuffer txBuffer;
-
 	private volatile MessageInfo msgInfo;
 
 	/**
@@ -121,27 +212,12 @@ public class AssociationImpl implements Association {
 	 * in Management, socket will be closed and request to reopen the cosket
 	 * will be initiated
 	 */
-	private volatile int ioErrors = 0;
+	private final AtomicInteger ioErrors = new AtomicInteger();
 
 	public AssociationImpl() {
 		super();
 	}
 
-	protected void initChannels() {
-        rxBuffer = ByteBuffer.allocateDirect(management.getBufferSize());
-        txBuffer = ByteBuffer.allocateDirect(management.getBufferSize());
-
-        // clean transmission buffer
-        txBuffer.clear();
-        txBuffer.rewind();
-        txBuffer.flip();
-
-        // clean receiver buffer
-        rxBuffer.clear();
-        rxBuffer.rewind();
-        rxBuffer.flip();
-	}
-
 	/**
 	 * Creating a CLIENT Association
 	 * 
@@ -220,12 +296,13 @@ public class AssociationImpl implements Association {
 			throw new NullPointerException(String.format("AssociationListener is null for Associatoion=%s", this.name));
 		}
 
+		this.started = true;
+
 		if (this.type == AssociationType.CLIENT) {
+			this.reconnectAttempts = 0;
 			this.scheduleConnect();
 		}
 
-		this.started = true;
-
 		if (logger.isInfoEnabled()) {
 			if (this.type != AssociationType.ANONYMOUS_SERVER) {
 				logger.info(String.format("Started Association=%s", this));
@@ -247,6 +324,8 @@ public class AssociationImpl implements Association {
 	 */
 	protected void stop() throws Exception {
 		this.started = false;
+		this.scheduledConnect.set(null);
+		this.nextReconnectTime = 0;
 		for (ManagementEventListener lstr : this.management.getManagementEventListeners()) {
 			try {
 				lstr.onAssociationStopped(this);
@@ -256,15 +335,14 @@ public class AssociationImpl implements Association {
 		}
 
 		if (this.getSocketChannel() != null && this.getSocketChannel().isOpen()) {
-			FastList<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-			synchronized (pendingChanges) {
-				// Indicate we want the interest ops set changed
-				pendingChanges.add(new ChangeRequest(getSocketChannel(), this, ChangeRequest.CLOSE, -1));
-			}
+			SelectorThread selectorThread = this.management.getSelectorThread(this);
+
+			// Indicate we want the channel closed
+			selectorThread.addChangeRequest(new ChangeRequest(getSocketChannel(), this, ChangeRequest.CLOSE, -1));
 
 			// Finally, wake up our selecting thread so it can make the required
 			// changes
-			this.management.getSocketSelector().wakeup();
+			selectorThread.wakeup();
 		}
 	}
 
@@ -351,6 +429,10 @@ public class AssociationImpl implements Association {
 		}
 
 		this.up = true;
+		this.reconnectAttempts = 0;
+		this.nextReconnectTime = 0;
+		this.connectFinished();
+
 		for (ManagementEventListener lstr : this.management.getManagementEventListeners()) {
 			try {
 				lstr.onAssociationUp(this);
@@ -423,7 +505,7 @@ public class AssociationImpl implements Association {
 	 */
 	protected void setManagement(ManagementImpl management) {
         this.management = management;
-        this.initChannels();
+        this.txQueue = new TxQueue(management.getTxQueueMaxMessages(), management.getTxQueueMaxBytes());
 	}
 
 	private AbstractSelectableChannel getSocketChannel() {
@@ -442,93 +524,233 @@ public class AssociationImpl implements Association {
 			this.socketChannelSctp = (SctpChannel) socketChannel;
 		else
 			this.socketChannelTcp = (SocketChannel) socketChannel;
+
+		// the new channel has no OP_WRITE interest yet
+		this.writeRequested.set(false);
 	}
 
 	public void send(PayloadData payloadData) throws Exception {
 		this.checkSocketIsOpen();
 
-		FastList<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-		synchronized (pendingChanges) {
+		if (!this.doSend(payloadData.getByteBuf(), payloadData.getStreamNumber(), payloadData.getPayloadProtocolId(),
+				payloadData.isComplete(), payloadData.isUnordered())) {
+			this.throwTxQueueFull();
+		}
+	}
+
+	@Override
+	public void send(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean unordered) throws Exception {
+		this.checkSocketIsOpen();
+
+		if (!this.doSend(byteBuf, streamNumber, payloadProtocolId, true, unordered)) {
+			this.throwTxQueueFull();
+		}
+	}
+
+	@Override
+	public void send(Collection<PayloadData> payloadDatas) throws Exception {
+		this.checkSocketIsOpen();
+
+		// The messages are only queued, so the SelectorThread writes them
+		// together. A direct send would write each of them separately
+		try {
+			for (PayloadData payloadData : payloadDatas) {
+				if (!this.queueTx(payloadData.getByteBuf(), payloadData.getStreamNumber(),
+						payloadData.getPayloadProtocolId(), payloadData.isComplete(), payloadData.isUnordered()))
+					this.throwTxQueueFull();
+			}
+		} finally {
+			this.flush();
+		}
+	}
+
+	@Override
+	public void write(PayloadData payloadData) throws Exception {
+		this.checkSocketIsOpen();
+
+		if (!this.queueTx(payloadData.getByteBuf(), payloadData.getStreamNumber(), payloadData.getPayloadProtocolId(),
+				payloadData.isComplete(), payloadData.isUnordered())) {
+			this.throwTxQueueFull();
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (!this.txQueue.isEmpty())
+			this.requestWrite();
+	}
+
+	/**
+	 * The message was not queued, so its buffer stays with the caller
+	 */
+	private void throwTxQueueFull() throws Exception {
+		throw new Exception(String.format("Transmit queue is full for Association=%s. Queued messages=%d, bytes=%d",
+				this.name, this.txQueue.size(), this.txQueue.getBytes()));
+	}
+
+	@Override
+	public boolean offer(PayloadData payloadData) {
+		if (!this.started || !this.up)
+			return false;
+
+		return this.doSend(payloadData.getByteBuf(), payloadData.getStreamNumber(), payloadData.getPayloadProtocolId(),
+				payloadData.isComplete(), payloadData.isUnordered());
+	}
+
+	/**
+	 * @return false if the message was not accepted because txQueue is full
+	 */
+	private boolean doSend(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean complete, boolean unordered) {
+		if (this.management.isDirectSend() && this.txQueue.isEmpty() && this.txLock.tryLock()) {
+			try {
+				// nothing may be pending, otherwise the message would overtake it
+				if (this.txQueue.isEmpty() && !this.hasPendingTx()) {
+					this.directSend(byteBuf, streamNumber, payloadProtocolId, complete, unordered);
+					return true;
+				}
+			} finally {
+				this.txLock.unlock();
+			}
+		}
+
+		// Queue the data we want written before the interest ops change, so
+		// the SelectorThread finds it once OP_WRITE fires
+		if (!this.queueTx(byteBuf, streamNumber, payloadProtocolId, complete, unordered))
+			return false;
+
+		this.requestWrite();
+		return true;
+	}
+
+	/**
+	 * @return false if the message was not accepted because txQueue is full
+	 */
+	private boolean queueTx(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean complete, boolean unordered) {
+		if (!this.txQueue.offer(byteBuf, streamNumber, payloadProtocolId, complete, unordered)) {
+			this.monitorCongestion();
+			this.checkUnwritable();
+			return false;
+		}
+		this.checkUnwritable();
+
+		long now = System.currentTimeMillis();
+		if (now - this.lastCongestionMonitorTime >= CONG_MONITOR_INTERVAL) {
+			this.lastCongestionMonitorTime = now;
+			this.monitorCongestion();
+		}
+		return true;
+	}
+
+	private void requestWrite() {
+		if (this.writeRequested.compareAndSet(false, true)) {
+			SelectorThread selectorThread = this.management.getSelectorThread(this);
 
 			// Indicate we want the interest ops set changed
-			pendingChanges.add(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.CHANGEOPS,
-					SelectionKey.OP_WRITE));
+			selectorThread.addChangeRequest(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.CHANGEOPS,
+					SelectionKey.OP_READ | SelectionKey.OP_WRITE));
 
-			// And queue the data we want written
-			// TODO Do we need to synchronize ConcurrentLinkedQueue ?
-			// synchronized (this.txQueue) {
-			this.txQueue.add(payloadData);
+			// Finally, wake up our selecting thread so it can make the
+			// required changes
+			selectorThread.wakeup();
 		}
+	}
 
-		// Finally, wake up our selecting thread so it can make the required
-		// changes
-		this.management.getSocketSelector().wakeup();
+	/**
+	 * Writes the message from the calling thread. Must be called with txLock
+	 * held and nothing pending in txQueue and pending tx buffers. If the
+	 * channel does not take the whole message the rest is left pending and
+	 * OP_WRITE is requested so the SelectorThread finishes it.
+	 */
+	private void directSend(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean complete, boolean unordered) {
+		try {
+			if (!this.addPendingTx(byteBuf, streamNumber, payloadProtocolId, complete, unordered))
+				return;
+
+			if (!this.writePendingTx()) {
+				SelectorThread selectorThread = this.management.getSelectorThread(this);
+				if (this.writeRequested.compareAndSet(false, true)) {
+					selectorThread.addChangeRequest(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.CHANGEOPS,
+							SelectionKey.OP_READ | SelectionKey.OP_WRITE));
+					selectorThread.wakeup();
+				}
+			}
+		} catch (IOException e) {
+			int errors = this.ioErrors.incrementAndGet();
+			logger.error(String.format(
+					"IOException while trying to write to underlying socket for Association=%s IOError count=%d",
+					this.name, errors), e);
+
+			if (errors > this.management.getMaxIOErrors()) {
+				// Close this socket in the SelectorThread and retry to
+				// connect after delay
+				SelectorThread selectorThread = this.management.getSelectorThread(this);
+				selectorThread.addChangeRequest(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.CLOSE, -1));
+				this.scheduleConnect();
+				selectorThread.wakeup();
+			}
+		}
 	}
 
+	/**
+	 * Checks that the Association is started and up. The up flag follows
+	 * COMM_UP / COMM_LOST / SHUTDOWN and close(), so no channel state is
+	 * queried on every send.
+	 */
 	private void checkSocketIsOpen() throws Exception {
-		if (this.ipChannelType == IpChannelType.SCTP) {
-			if (!this.started || this.socketChannelSctp == null || !this.socketChannelSctp.isOpen()
-					|| this.socketChannelSctp.association() == null)
+		if (!this.started || !this.up) {
+			if (this.ipChannelType == IpChannelType.SCTP)
 				throw new Exception(String.format(
 						"Underlying sctp channel doesn't open or doesn't have association for Association=%s",
 						this.name));
-		} else {
-			if (!this.started || this.socketChannelTcp == null || !this.socketChannelTcp.isOpen()
-					|| !this.socketChannelTcp.isConnected())
+			else
 				throw new Exception(String.format("Underlying tcp channel doesn't open for Association=%s", this.name));
 		}
 	}
 
+	/**
+	 * Reads the socket until it is drained or the read budget of Management
+	 * is used up. The rest is read in the next pass of the SelectorThread, so
+	 * a busy Association does not starve the others of the same selector.
+	 */
 	protected void read() {
 
 		try {
-			PayloadData payload;
-			if (this.ipChannelType == IpChannelType.SCTP)
-				payload = this.doReadSctp();
-			else
-				payload = this.doReadTcp();
-			if (payload == null)
-				return;
-
-			if (logger.isDebugEnabled()) {
-				logger.debug(String.format("Rx : Ass=%s %s", this.name, payload));
-			}
-
-			if (this.management.isSingleThread()) {
-				// If single thread model the listener should be called in the
-				// selector thread itself
-				try {
-					this.associationListener.onPayload(this, payload);
-				} catch (Exception e) {
-					logger.error(String.format("Error while calling Listener for Association=%s.Payload=%s", this.name,
-							payload), e);
+			int maxMessages = this.management.getReadBudgetMessages();
+			int maxBytes = this.management.getReadBudgetBytes();
+			MessageFramer messageFramer = this.management.getMessageFramer();
+
+			int messages = 0;
+			int bytes = 0;
+			while (true) {
+				int len;
+				if (this.ipChannelType == IpChannelType.SCTP) {
+					len = this.doReadSctp();
+				} else if (messageFramer != null) {
+					len = this.doReadTcpFramed(messageFramer);
+				} else {
+					len = this.doReadTcp();
 				}
-			} else {
-				Worker worker = new Worker(this, this.associationListener, payload);
 
-//				System.out.println("payload.getStreamNumber()=" + payload.getStreamNumber()
-//						+ " this.workerThreadTable[payload.getStreamNumber()]"
-//						+ this.workerThreadTable[payload.getStreamNumber()]);
+				// negative when nothing more was read or the socket is closed
+				if (len < 0)
+					break;
 
-				ExecutorService executorService = this.management.getExecutorService(this.workerThreadTable[payload
-						.getStreamNumber()]);
-				try {
-					executorService.execute(worker);
-				} catch (RejectedExecutionException e) {
-					logger.error(String.format("Rejected %s as Executors is shutdown", payload), e);
-				} catch (NullPointerException e) {
-					logger.error(String.format("NullPointerException while submitting %s", payload), e);
-				} catch (Exception e) {
-					logger.error(String.format("Exception while submitting %s", payload), e);
-				}
+				messages++;
+				bytes += len;
+				if (messages >= maxMessages || bytes >= maxBytes)
+					break;
+
+				AbstractSelectableChannel socketChannel = this.getSocketChannel();
+				if (socketChannel == null || !socketChannel.isOpen())
+					break;
 			}
 		} catch (IOException e) {
-			this.ioErrors++;
+			int errors = this.ioErrors.incrementAndGet();
 			logger.error(String.format(
 					"IOException while trying to read from underlying socket for Association=%s IOError count=%d",
-					this.name, this.ioErrors), e);
+					this.name, errors), e);
 
-			if (this.ioErrors > this.management.getMaxIOErrors()) {
+			if (errors > this.management.getMaxIOErrors()) {
 				// Close this socket
 				this.close();
 
@@ -538,172 +760,579 @@ public class AssociationImpl implements Association {
 		}
 	}
 
-	private PayloadData doReadSctp() throws IOException {
+	/**
+	 * Hands a received message to the AssociationListener, in this thread in
+	 * single thread mode or through the DispatchLane of its stream
+	 */
+	protected void deliver(PayloadData payload) {
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Rx : Ass=%s %s", this.name, payload));
+		}
 
-		rxBuffer.clear();
-		MessageInfo messageInfo = this.socketChannelSctp.receive(rxBuffer, this, this.associationHandler);
+		if (this.management.isSingleThread()) {
+			// If single thread model the listener should be called in the
+			// selector thread itself
+			try {
+				this.associationListener.onPayload(this, payload);
+			} catch (Exception e) {
+				logger.error(String.format("Error while calling Listener for Association=%s.Payload=%s", this.name,
+						payload), e);
+			}
+		} else {
+			int streamNumber = payload.getStreamNumber();
+			DispatchLane dispatchLane = this.getDispatchLane(streamNumber);
+			AtomicIntegerArray inFlight = this.streamInFlight;
+			inFlight.incrementAndGet(streamNumber);
+			this.streamTraffic.incrementAndGet(streamNumber);
+			if (!dispatchLane.publish(this, payload, inFlight)) {
+				inFlight.decrementAndGet(streamNumber);
+				logger.error(String.format("Rejected %s as DispatchLane is stopped", payload));
+				payload.getByteBuf().release();
+			}
+		}
+	}
+
+	/**
+	 * Allocates a pooled direct buffer of bufferSize. Data is received
+	 * straight into it and the buffer is handed over to PayloadData, so the
+	 * listener (like with the netty stack) must release it, for example by
+	 * PayloadData.getData()
+	 */
+	private ByteBuf allocateRxBuffer() {
+		return this.management.getByteBufAllocator().directBuffer(this.management.getBufferSize());
+	}
+
+	/**
+	 * Receives one SCTP message or part of it and delivers it once complete
+	 * 
+	 * @return the received bytes, -1 if nothing was received or the socket
+	 *         is closed
+	 */
+	private int doReadSctp() throws IOException {
+
+		ByteBuf rxBuf = this.allocateRxBuffer();
+		MessageInfo messageInfo;
+		try {
+			messageInfo = this.socketChannelSctp.receive(rxBuf.internalNioBuffer(0, rxBuf.capacity()), this,
+					this.associationHandler);
+		} catch (IOException e) {
+			rxBuf.release();
+			throw e;
+		}
 
 		if (messageInfo == null) {
+			rxBuf.release();
 			if (logger.isDebugEnabled()) {
 				logger.debug(String.format(" messageInfo is null for Association=%s", this.name));
 			}
-			return null;
+			return -1;
 		}
 
 		int len = messageInfo.bytes();
 		if (len == -1) {
+			rxBuf.release();
 			logger.error(String.format("Rx -1 while trying to read from underlying socket for Association=%s ",
 					this.name));
 			this.close();
 			this.scheduleConnect();
-			return null;
+			return -1;
 		}
 
-		rxBuffer.flip();
-		byte[] data = new byte[len];
-		rxBuffer.get(data);
-		rxBuffer.clear();
+		rxBuf.writerIndex(len);
+
+		// a message bigger than the receive buffer, or delivered partially by
+		// the peer, is received in parts
+		int streamNumber = messageInfo.streamNumber();
+		ByteBuf message = rxBuf;
+		if (!messageInfo.isComplete() || this.sctpReassembler != null) {
+			if (this.sctpReassembler == null) {
+				this.sctpReassembler = new SctpReassembler(this.name, this.management.getByteBufAllocator(),
+						this.management.getReassemblyMaxStreamBytes(), this.management.getReassemblyMaxAssociationBytes());
+			}
+			message = this.sctpReassembler.reassemble(streamNumber, rxBuf, messageInfo.isComplete());
+			if (message == null)
+				return len;
+		}
 
-		PayloadData payload = new PayloadData(len, data, messageInfo.isComplete(), messageInfo.isUnordered(),
-				messageInfo.payloadProtocolID(), messageInfo.streamNumber());
+		PayloadData payload = new PayloadData(message.readableBytes(), message, true, messageInfo.isUnordered(),
+				messageInfo.payloadProtocolID(), streamNumber);
+		this.deliver(payload);
 
-		return payload;
+		return len;
 	}
 
-	private PayloadData doReadTcp() throws IOException {
+	/**
+	 * Reads a TCP Association using a MessageFramer. Data is received
+	 * straight into rxCumulation and each complete message is delivered as a
+	 * slice of it, so messages are not copied. Only the head of a message
+	 * which does not fit in the rest of the buffer is moved to a new one.
+	 * 
+	 * @return the received bytes, -1 if nothing was received or the socket
+	 *         is closed
+	 */
+	private int doReadTcpFramed(MessageFramer messageFramer) throws IOException {
+
+		ByteBuf buf = this.rxCumulation;
+		if (buf == null) {
+			buf = this.allocateRxBuffer();
+		} else if (!buf.isWritable()) {
+			buf = this.expandRxCumulation(buf, messageFramer);
+		}
+		this.rxCumulation = buf;
+
+		int len = this.socketChannelTcp.read(buf.internalNioBuffer(buf.writerIndex(), buf.writableBytes()));
 
-		rxBuffer.clear();
-		int len = this.socketChannelTcp.read(rxBuffer);
 		if (len == -1) {
 			logger.warn(String.format("Rx -1 while trying to read from underlying socket for Association=%s ",
 					this.name));
 			this.close();
 			this.scheduleConnect();
-			return null;
+			return -1;
 		}
 
-		rxBuffer.flip();
-		byte[] data = new byte[len];
-		rxBuffer.get(data);
-		rxBuffer.clear();
+		if (len == 0)
+			return -1;
 
-		PayloadData payload = new PayloadData(len, data, true, false, 0, 0);
+		buf.writerIndex(buf.writerIndex() + len);
 
-		return payload;
-	}
+		while (buf.isReadable()) {
+			int messageLength;
+			try {
+				messageLength = messageFramer.getMessageLength(buf);
+			} catch (Exception e) {
+				logger.error(String.format("Corrupted message stream for Association=%s, closing the connection", this.name), e);
+				this.close();
+				this.scheduleConnect();
+				return -1;
+			}
 
-	protected void write(SelectionKey key) {
+			if (messageLength < 0 || buf.readableBytes() < messageLength)
+				break;
 
-		try {
+			ByteBuf message = buf.readSlice(messageLength).retain();
+			this.deliver(new PayloadData(messageLength, message, true, false, 0, 0));
+		}
 
-			if (txBuffer.hasRemaining()) {
-				// All data wasn't sent in last doWrite. Try to send it now
-				// this.socketChannel.send(txBuffer, msgInfo);
-				this.doSend();
-			}
+		if (!buf.isReadable()) {
+			// every message delivered, the slices keep the buffer alive
+			this.rxCumulation = null;
+			buf.release();
+		}
 
-			// TODO Do we need to synchronize ConcurrentLinkedQueue?
-			// synchronized (this.txQueue) {
-			if (!txQueue.isEmpty() && !txBuffer.hasRemaining()) {
-				while (!txQueue.isEmpty()) {
-					// Lets read all the messages in txQueue and send
+		return len;
+	}
 
-					txBuffer.clear();
-					PayloadData payloadData = txQueue.poll();
+	/**
+	 * Moves the not yet complete message at the head of a full rxCumulation
+	 * to a new buffer big enough for the whole message
+	 */
+	private ByteBuf expandRxCumulation(ByteBuf buf, MessageFramer messageFramer) {
+		int messageLength = -1;
+		try {
+			messageLength = messageFramer.getMessageLength(buf);
+		} catch (Exception e) {
+			// reported when the message is parsed after the next read
+		}
+		int capacity = Math.max(this.management.getBufferSize(), Math.max(messageLength, buf.readableBytes() * 2));
+
+		ByteBuf newBuf = this.management.getByteBufAllocator().directBuffer(capacity);
+		newBuf.writeBytes(buf);
+		buf.release();
+		return newBuf;
+	}
+
+	/**
+	 * Reads a TCP Association and delivers what is read as one PayloadData
+	 * 
+	 * @return the received bytes, -1 if nothing was received or the socket
+	 *         is closed
+	 */
+	private int doReadTcp() throws IOException {
 
-					if (logger.isDebugEnabled()) {
-						logger.debug(String.format("Tx : Ass=%s %s", this.name, payloadData));
-					}
+		ByteBuf rxBuf = this.allocateRxBuffer();
+		int len;
+		try {
+			len = this.socketChannelTcp.read(rxBuf.internalNioBuffer(0, rxBuf.capacity()));
+		} catch (IOException e) {
+			rxBuf.release();
+			throw e;
+		}
 
-					// load ByteBuffer
-					// TODO: BufferOverflowException ?
-					txBuffer.put(payloadData.getData());
+		if (len == -1) {
+			rxBuf.release();
+			logger.warn(String.format("Rx -1 while trying to read from underlying socket for Association=%s ",
+					this.name));
+			this.close();
+			this.scheduleConnect();
+			return -1;
+		}
 
-					if (this.ipChannelType == IpChannelType.SCTP) {
-						int seqControl = payloadData.getStreamNumber();
+		if (len == 0) {
+			rxBuf.release();
+			return -1;
+		}
 
-						if (seqControl < 0 || seqControl >= this.associationHandler.getMaxOutboundStreams()) {
-							try {
-								// TODO : calling in same Thread. Is this ok? or
-								// dangerous?
-								this.associationListener.inValidStreamId(payloadData);
-							} catch (Exception e) {
+		rxBuf.writerIndex(len);
 
-							}
-							txBuffer.clear();
-							txBuffer.flip();
-							continue;
-						}
+		PayloadData payload = new PayloadData(len, rxBuf, true, false, 0, 0);
+		this.deliver(payload);
 
-						msgInfo = MessageInfo.createOutgoing(this.peerSocketAddress, seqControl);
-						msgInfo.payloadProtocolID(payloadData.getPayloadProtocolId());
-						msgInfo.complete(payloadData.isComplete());
-						msgInfo.unordered(payloadData.isUnordered());
-					}
+		return len;
+	}
 
-					txBuffer.flip();
+	protected void write(SelectionKey key) {
 
-					this.doSend();
+		this.txLock.lock();
+		try {
 
-					if (txBuffer.hasRemaining()) {
-						// Couldn't send all data. Lets return now and try to
-						// send
-						// this message in next cycle
-						return;
-					}
+			if (this.hasPendingTx()) {
+				// All data wasn't sent in last write. Try to send it now
+				if (!this.writePendingTx()) {
+					// still not all sent, keep OP_WRITE and retry next cycle
+					return;
+				}
+			}
 
-				}// end of while
+			// Lets read all the messages in txQueue and send
+			while (this.loadPendingTx()) {
+				if (!this.writePendingTx()) {
+					// Couldn't send all data. Lets return now and try to
+					// send the rest in next cycle
+					this.checkWritable();
+					return;
+				}
 			}
+			this.checkWritable();
 
 			if (txQueue.isEmpty()) {
+				// recalculate at once, a congestion must not stay after the
+				// queue has been drained
+				if (this.congLevel > 0)
+					this.monitorCongestion();
+
 				// We wrote away all data, so we're no longer interested
 				// in writing on this socket. Switch back to waiting for
 				// data.
 				key.interestOps(SelectionKey.OP_READ);
+				this.writeRequested.set(false);
+
+				// A sender may have queued data after the queue was found
+				// empty but before the flag was cleared. It has not asked for
+				// OP_WRITE then, so re-arm it here.
+				if (!txQueue.isEmpty() && this.writeRequested.compareAndSet(false, true)) {
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
 			}
 
 		} catch (IOException e) {
-			this.ioErrors++;
+			int errors = this.ioErrors.incrementAndGet();
 			logger.error(String.format(
 					"IOException while trying to write to underlying socket for Association=%s IOError count=%d",
-					this.name, this.ioErrors), e);
+					this.name, errors), e);
 
-			if (this.ioErrors > this.management.getMaxIOErrors()) {
+			if (errors > this.management.getMaxIOErrors()) {
 				// Close this socket
 				this.close();
 
 				// retry to connect after delay
 				this.scheduleConnect();
 			}
-		}// try-catch
+		} finally {
+			this.txLock.unlock();
+		}
 	}
 
-	private int doSend() throws IOException {
-		if (this.ipChannelType == IpChannelType.SCTP)
-			return this.doSendSctp();
-		else
-			return this.doSendTcp();
+	/**
+	 * @return true if some payload is loaded but not yet completely written
+	 */
+	private boolean hasPendingTx() {
+		return this.txNioBufferIndex < this.txNioBufferCount;
 	}
 
-	private int doSendSctp() throws IOException {
-		return this.socketChannelSctp.send(txBuffer, msgInfo);
+	/**
+	 * Loads payloads from txQueue as pending: one message for SCTP as
+	 * SctpChannel.send() is message based, as many as fit into one gathering
+	 * write for TCP.
+	 * 
+	 * @return false if nothing was loaded because txQueue is empty
+	 */
+	private boolean loadPendingTx() {
+		TxQueue queue = this.txQueue;
+		ByteBuf byteBuf;
+		if (this.ipChannelType == IpChannelType.SCTP) {
+			while ((byteBuf = queue.poll()) != null) {
+				this.lastTxQueueDelay = System.nanoTime() - queue.getLastPolledEnqueueTime();
+				if (this.addPendingTx(byteBuf, queue.getLastPolledStreamNumber(), queue.getLastPolledPayloadProtocolId(),
+						queue.isLastPolledComplete(), queue.isLastPolledUnordered()))
+					return true;
+			}
+			return false;
+		} else {
+			while (this.txNioBufferCount < MAX_GATHERING_WRITE_BUFFERS && (byteBuf = queue.poll()) != null) {
+				this.addPendingTx(byteBuf, queue.getLastPolledStreamNumber(), queue.getLastPolledPayloadProtocolId(),
+						queue.isLastPolledComplete(), queue.isLastPolledUnordered());
+			}
+			if (this.hasPendingTx())
+				this.lastTxQueueDelay = System.nanoTime() - this.txQueue.getLastPolledEnqueueTime();
+			return this.hasPendingTx();
+		}
 	}
 
-	private int doSendTcp() throws IOException {
-		return this.socketChannelTcp.write(txBuffer);
+	/**
+	 * Adds the payload NIO buffers to the pending write. The ByteBuf is
+	 * released once it is completely written. For SCTP also prepares msgInfo
+	 * and returns false if the stream number is invalid, the listener is
+	 * notified then and the payload dropped.
+	 */
+	private boolean addPendingTx(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean complete,
+			boolean unordered) {
+
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Tx : Ass=%s %s", this.name, new PayloadData(byteBuf.readableBytes(), byteBuf,
+					complete, unordered, payloadProtocolId, streamNumber)));
+		}
+
+		if (this.ipChannelType == IpChannelType.SCTP) {
+			int seqControl = streamNumber;
+
+			if (seqControl < 0 || seqControl >= this.associationHandler.getMaxOutboundStreams()) {
+				try {
+					// TODO : calling in same Thread. Is this ok? or
+					// dangerous?
+					this.associationListener.inValidStreamId(new PayloadData(byteBuf.readableBytes(), byteBuf, complete,
+							unordered, payloadProtocolId, streamNumber));
+				} catch (Exception e) {
+
+				}
+				// the listener may have already consumed it by getData()
+				if (byteBuf.refCnt() > 0)
+					byteBuf.release();
+				return false;
+			}
+
+			// one MessageInfo is reused for all messages of the Association
+			MessageInfo info = this.msgInfo;
+			if (info == null) {
+				info = MessageInfo.createOutgoing(this.peerSocketAddress, seqControl);
+				this.msgInfo = info;
+			} else {
+				info.streamNumber(seqControl);
+			}
+			info.payloadProtocolID(payloadProtocolId);
+			info.complete(complete);
+			info.unordered(unordered);
+
+			// SctpChannel sends one message from one ByteBuffer
+			this.ensureTxNioBufferCapacity(1);
+			this.txNioBuffers[this.txNioBufferCount] = byteBuf.nioBuffer();
+			this.txNioBufferOwners[this.txNioBufferCount] = byteBuf;
+			this.txNioBufferCount++;
+		} else {
+			int count = byteBuf.nioBufferCount();
+			this.ensureTxNioBufferCapacity(count);
+			if (count == 1) {
+				this.txNioBuffers[this.txNioBufferCount] = byteBuf.nioBuffer();
+			} else {
+				ByteBuffer[] nioBuffers = byteBuf.nioBuffers();
+				System.arraycopy(nioBuffers, 0, this.txNioBuffers, this.txNioBufferCount, nioBuffers.length);
+				count = nioBuffers.length;
+			}
+			// the owner is kept at the last buffer of the payload
+			this.txNioBufferOwners[this.txNioBufferCount + count - 1] = byteBuf;
+			this.txNioBufferCount += count;
+		}
+
+		return true;
+	}
+
+	private void ensureTxNioBufferCapacity(int count) {
+		int required = this.txNioBufferCount + count;
+		if (required > this.txNioBuffers.length) {
+			ByteBuffer[] newBuffers = new ByteBuffer[required];
+			System.arraycopy(this.txNioBuffers, 0, newBuffers, 0, this.txNioBufferCount);
+			this.txNioBuffers = newBuffers;
+			ByteBuf[] newOwners = new ByteBuf[required];
+			System.arraycopy(this.txNioBufferOwners, 0, newOwners, 0, this.txNioBufferCount);
+			this.txNioBufferOwners = newOwners;
+		}
+	}
+
+	/**
+	 * Writes the pending buffers. Completely written payloads are released.
+	 * 
+	 * @return true if everything pending has been written
+	 */
+	private boolean writePendingTx() throws IOException {
+		if (this.ipChannelType == IpChannelType.SCTP) {
+			// message based: either the whole message is sent or nothing
+			if (this.socketChannelSctp.send(this.txNioBuffers[this.txNioBufferIndex], msgInfo) == 0)
+				return false;
+		} else {
+			this.socketChannelTcp.write(this.txNioBuffers, this.txNioBufferIndex, this.txNioBufferCount
+					- this.txNioBufferIndex);
+		}
+
+		while (this.txNioBufferIndex < this.txNioBufferCount && !this.txNioBuffers[this.txNioBufferIndex].hasRemaining()) {
+			ByteBuf owner = this.txNioBufferOwners[this.txNioBufferIndex];
+			if (owner != null) {
+				owner.release();
+				this.txNioBufferOwners[this.txNioBufferIndex] = null;
+			}
+			this.txNioBuffers[this.txNioBufferIndex] = null;
+			this.txNioBufferIndex++;
+		}
+
+		if (this.txNioBufferIndex < this.txNioBufferCount)
+			return false;
+
+		this.txNioBufferIndex = 0;
+		this.txNioBufferCount = 0;
+		return true;
+	}
+
+	/**
+	 * Releases payloads which are loaded but not completely written
+	 */
+	private void clearPendingTx() {
+		for (int i = this.txNioBufferIndex; i < this.txNioBufferCount; i++) {
+			ByteBuf owner = this.txNioBufferOwners[i];
+			if (owner != null) {
+				owner.release();
+				this.txNioBufferOwners[i] = null;
+			}
+			this.txNioBuffers[i] = null;
+		}
+		this.txNioBufferIndex = 0;
+		this.txNioBufferCount = 0;
 	}
 
     @Override
     public ByteBufAllocator getByteBufAllocator() {
-        return null;
+        return this.management.getByteBufAllocator();
     }
 
     @Override
     public int getCongestionLevel() {
-        return 0;
+        return this.congLevel;
+    }
+
+	@Override
+	public int getReconnectAttempts() {
+		return this.reconnectAttempts;
+	}
+
+	@Override
+	public long getNextReconnectTime() {
+		return this.nextReconnectTime;
+	}
+
+	/**
+	 * @return the ReconnectPolicy of this Association, null if the one of
+	 *         Management is used
+	 */
+	public ReconnectPolicy getReconnectPolicy() {
+		return reconnectPolicy;
+	}
+
+	/**
+	 * @param reconnectPolicy
+	 *            the ReconnectPolicy of this Association, null to use the one
+	 *            of Management
+	 */
+	public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	@Override
+	public boolean isWritable() {
+		return this.writable.get();
+	}
+
+	/**
+	 * @return the filling of txQueue: the part of the message or byte limit,
+	 *         whichever is higher
+	 */
+	private double txQueueFill() {
+		TxQueue queue = this.txQueue;
+		return Math.max((double) queue.size() / queue.getMaxMessages(), (double) queue.getBytes() / queue.getMaxBytes());
+	}
+
+	private void checkUnwritable() {
+		if (this.writable.get() && this.txQueueFill() >= TX_QUEUE_HIGH_WATER_MARK
+				&& this.writable.compareAndSet(true, false))
+			this.fireWritabilityChanged(false);
+	}
+
+	private void checkWritable() {
+		if (!this.writable.get() && this.txQueueFill() <= TX_QUEUE_LOW_WATER_MARK
+				&& this.writable.compareAndSet(false, true))
+			this.fireWritabilityChanged(true);
+	}
+
+	private void fireWritabilityChanged(boolean writable) {
+		AssociationListener listener = this.associationListener;
+		if (listener instanceof AssociationWritabilityListener) {
+			try {
+				((AssociationWritabilityListener) listener).onWritabilityChanged(this, writable);
+			} catch (Throwable e) {
+				logger.error(String.format("Exception while invoking onWritabilityChanged for Association=%s", this.name), e);
+			}
+		}
+	}
+
+    protected void setCongestionLevel(int val) {
+        if (this.congLevel == val)
+            return;
+
+        logger.warn("Outgoing congestion control: SCTP: Changing of congestion level for Association=" + this.name + " "
+                + this.congLevel + "->" + val);
+
+        int oldLevel = this.congLevel;
+        this.congLevel = val;
+
+        for (CongestionListener lstr : this.management.getCongestionListeners()) {
+            try {
+                lstr.onCongLevelChanged(this, oldLevel, val);
+            } catch (Throwable ee) {
+                logger.error("Exception while invoking onCongLevelChanged", ee);
+            }
+        }
+    }
+
+    /**
+     * Recalculates the congestion level from the txQueue filling and the
+     * queueing delay of the last written message. Delay thresholds are the
+     * Management CongControl ones (seconds). A level rises if the delay or the
+     * filling is over its threshold and backs only when both are below their
+     * back-to-normal thresholds.
+     */
+    private void monitorCongestion() {
+        synchronized (this.congestionLock) {
+            double delaySec = this.txQueue.isEmpty() ? 0 : (double) this.lastTxQueueDelay / 1000000000;
+            double fill = this.txQueueFill();
+
+            double[] delayThreshold = this.management.congControl_DelayThreshold;
+            double[] backToNormalDelayThreshold = this.management.congControl_BackToNormalDelayThreshold;
+
+            int level = this.congLevel;
+            int newLevel = level;
+            for (int i1 = level - 1; i1 >= 0; i1--) {
+                if (delaySec <= backToNormalDelayThreshold[i1] && fill <= CONG_QUEUE_FILL_BACK_TO_NORMAL_THRESHOLD[i1]) {
+                    newLevel = i1;
+                }
+            }
+            for (int i1 = level; i1 < 3; i1++) {
+                if (delaySec >= delayThreshold[i1] || fill >= CONG_QUEUE_FILL_THRESHOLD[i1]) {
+                    newLevel = i1 + 1;
+                }
+            }
+            this.setCongestionLevel(newLevel);
+        }
     }
 
 	protected void close() {
+		this.connectFinished();
+
 		if (this.getSocketChannel() != null) {
 			try {
 				this.getSocketChannel().close();
@@ -726,28 +1355,101 @@ public class AssociationImpl implements Association {
 			logger.warn(String.format("Clearig txQueue for Association=%s. %d messages still pending will be cleared",
 					this.name, this.txQueue.size()));
 		}
-		this.txQueue.clear();
+		this.txLock.lock();
+		try {
+			this.clearPendingTx();
+			ByteBuf byteBuf;
+			while ((byteBuf = this.txQueue.poll()) != null) {
+				byteBuf.release();
+			}
+		} finally {
+			this.txLock.unlock();
+		}
+		this.writeRequested.set(false);
+
+		synchronized (this.congestionLock) {
+			this.setCongestionLevel(0);
+		}
+		// the Association is reported as down, not as writable again
+		this.writable.set(true);
+
+		this.releaseWorkerThreadTable();
+
+		ByteBuf cumulation = this.rxCumulation;
+		this.rxCumulation = null;
+		if (cumulation != null)
+			cumulation.release();
+
+		if (this.sctpReassembler != null)
+			this.sctpReassembler.release();
 	}
 
 	protected void scheduleConnect() {
 		if (this.getAssociationType() == AssociationType.CLIENT) {
 			// If Associtaion is of Client type, reinitiate the connection
 			// procedure
-			FastList<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-			synchronized (pendingChanges) {
-				pendingChanges.add(new ChangeRequest(this, ChangeRequest.CONNECT, System.currentTimeMillis()
-						+ this.management.getConnectDelay()));
-			}
+			this.connectFinished();
+
+			ReconnectPolicy policy = this.reconnectPolicy;
+			if (policy == null)
+				policy = this.management.getReconnectPolicy();
+			long delay = policy.getReconnectDelay(this.reconnectAttempts, this.management.getConnectDelay());
+			this.reconnectAttempts++;
+
+			this.scheduleConnect(delay);
 		}
 	}
 
-	protected void initiateConnection() throws IOException {
+	private void scheduleConnect(long delay) {
+		long executionTime = System.currentTimeMillis() + delay;
+		ChangeRequest change = new ChangeRequest(this, ChangeRequest.CONNECT, executionTime);
+		if (!this.scheduledConnect.compareAndSet(null, change))
+			return;
+
+		this.nextReconnectTime = executionTime;
 
+		SelectorThread selectorThread = this.management.getSelectorThread(this);
+		selectorThread.addChangeRequest(change);
+		selectorThread.wakeup();
+	}
+
+	/**
+	 * Called by the SelectorThread when the timer of a scheduled connection
+	 * attempt expires. The attempt is dropped if it is not the one scheduled
+	 * now, i.e. the Association has been stopped since.
+	 */
+	protected void connectTimerExpired(ChangeRequest change) throws IOException {
+		if (this.scheduledConnect.compareAndSet(change, null))
+			this.initiateConnection();
+	}
+
+	/**
+	 * Gives back the connection slot of Management if this Association holds
+	 * one
+	 */
+	private void connectFinished() {
+		if (this.connectInProgress.compareAndSet(true, false)) {
+			this.management.releaseConnect();
+		}
+	}
+
+	private void initiateConnection() throws IOException {
 		// If Association is stopped, don't try to initiate connect
 		if (!this.started) {
 			return;
 		}
 
+		if (!this.connectInProgress.get()) {
+			if (!this.management.acquireConnect()) {
+				// too many connection attempts in progress, try again soon
+				// without counting this as an attempt
+				this.scheduleConnect(CONNECT_SLOT_WAIT / 2 + ThreadLocalRandom.current().nextInt(CONNECT_SLOT_WAIT));
+				return;
+			}
+			this.connectInProgress.set(true);
+		}
+		this.nextReconnectTime = 0;
+
 		if (this.getSocketChannel() != null) {
 			try {
 				this.getSocketChannel().close();
@@ -771,21 +1473,22 @@ public class AssociationImpl implements Association {
 		}
 
 		// reset the ioErrors
-		this.ioErrors = 0;
+		this.ioErrors.set(0);
+
+		// the new channel has no OP_WRITE interest yet
+		this.writeRequested.set(false);
 
 		// Queue a channel registration since the caller is not the
 		// selecting thread. As part of the registration we'll register
 		// an interest in connection events. These are raised when a channel
 		// is ready to complete connection establishment.
-		FastList<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-		synchronized (pendingChanges) {
-			pendingChanges.add(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.REGISTER,
-					SelectionKey.OP_CONNECT));
-		}
+		SelectorThread selectorThread = this.management.getSelectorThread(this);
+		selectorThread.addChangeRequest(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.REGISTER,
+				SelectionKey.OP_CONNECT));
 
 		// Finally, wake up our selecting thread so it can make the required
 		// changes
-		this.management.getSocketSelector().wakeup();
+		selectorThread.wakeup();
 
 	}
 
@@ -820,8 +1523,102 @@ public class AssociationImpl implements Association {
 	}
 
 	protected void createworkerThreadTable(int maximumBooundStream) {
-		this.workerThreadTable = new int[maximumBooundStream];
-		this.management.populateWorkerThread(this.workerThreadTable);
+		this.releaseWorkerThreadTable();
+
+		int[] table = new int[maximumBooundStream];
+		this.mappedLanes = this.management.populateWorkerThread(this, table);
+		this.streamInFlight = new AtomicIntegerArray(maximumBooundStream);
+		this.streamTraffic = new AtomicIntegerArray(maximumBooundStream);
+		AtomicIntegerArray moveTo = new AtomicIntegerArray(maximumBooundStream);
+		for (int i = 0; i < maximumBooundStream; i++) {
+			moveTo.set(i, -1);
+		}
+		this.streamMoveTo = moveTo;
+		this.workerThreadTable = new AtomicIntegerArray(table);
+	}
+
+	/**
+	 * Gives the streams of this Association back to their DispatchLanes
+	 */
+	protected void releaseWorkerThreadTable() {
+		DispatchLane[] lanes = this.mappedLanes;
+		AtomicIntegerArray table = this.workerThreadTable;
+		this.mappedLanes = null;
+		if (lanes == null || table == null)
+			return;
+
+		for (int i = 0; i < table.length(); i++) {
+			lanes[table.get(i)].removeMappedStream();
+		}
+	}
+
+	/**
+	 * Returns the DispatchLane of a stream. A move asked by the
+	 * WorkerRebalancer is done here, in the SelectorThread which is the only
+	 * publisher for this Association, and only once every message of the
+	 * stream already published is delivered. So the order of the stream is
+	 * kept.
+	 */
+	private DispatchLane getDispatchLane(int streamNumber) {
+		int lane = this.workerThreadTable.get(streamNumber);
+		DispatchLane[] lanes = this.mappedLanes;
+		if (lanes == null)
+			return this.management.getDispatchLane(lane);
+
+		int moveTo = this.streamMoveTo.get(streamNumber);
+		if (moveTo >= 0 && this.streamInFlight.get(streamNumber) == 0) {
+			this.streamMoveTo.set(streamNumber, -1);
+			if (moveTo != lane && moveTo < lanes.length) {
+				lanes[lane].removeMappedStream();
+				lanes[moveTo].addMappedStream();
+				this.workerThreadTable.set(streamNumber, moveTo);
+				lane = moveTo;
+
+				if (logger.isDebugEnabled()) {
+					logger.debug(String.format("Moved stream=%d of Association=%s to DispatchLane=%s", streamNumber,
+							this.name, lanes[moveTo].getName()));
+				}
+			}
+		}
+		return lanes[lane];
+	}
+
+	/**
+	 * Asks to move a stream to another DispatchLane at the next safe point
+	 */
+	protected void requestStreamMove(int streamNumber, int lane) {
+		AtomicIntegerArray moveTo = this.streamMoveTo;
+		if (moveTo != null && streamNumber < moveTo.length())
+			moveTo.set(streamNumber, lane);
+	}
+
+	/**
+	 * @return the DispatchLane index of each stream, null if the Association
+	 *         has not been up in multi thread mode
+	 */
+	protected AtomicIntegerArray getWorkerThreadTable() {
+		return this.workerThreadTable;
+	}
+
+	/**
+	 * @return count of not yet delivered messages of the stream
+	 */
+	protected int getStreamInFlight(int streamNumber) {
+		AtomicIntegerArray inFlight = this.streamInFlight;
+		if (inFlight == null || streamNumber >= inFlight.length())
+			return 0;
+		return inFlight.get(streamNumber);
+	}
+
+	/**
+	 * @return count of messages of the stream published since the previous
+	 *         call, the count is reset
+	 */
+	protected int takeStreamTraffic(int streamNumber) {
+		AtomicIntegerArray traffic = this.streamTraffic;
+		if (traffic == null || streamNumber >= traffic.length())
+			return 0;
+		return traffic.getAndSet(streamNumber, 0);
 	}
 
 	/*
@@ -0,0 +1,291 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.PayloadData;
+
+/**
+ * Delivers received messages to AssociationListeners in one dedicated thread
+ * when the stack is not in single thread mode. The SelectorThreads publish
+ * into a pre-allocated ring, the lane thread takes every published message
+ * in a batch and calls the listener. Messages of a stream always go to the
+ * same lane so their order is kept.
+ * 
+ * If the ring is full the publishing SelectorThread yields until a slot is
+ * freed, which pushes back on reading from the sockets.
+ */
+public class DispatchLane implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(DispatchLane.class);
+
+	// Spins of YIELDING strategy before it starts yielding
+	private static final int SPIN_TRIES = 100;
+
+	// BLOCKING strategy re-checks the ring at least this often
+	private static final long PARK_NANOS = 1000000L;
+
+	private final String name;
+	private final WaitStrategy waitStrategy;
+
+	private final int mask;
+	private final AssociationImpl[] associations;
+	private final PayloadData[] payloads;
+	// per stream in flight counters the messages were counted in when
+	// published, so a reconnect that creates new counters is not confused by
+	// messages of the previous connection
+	private final AtomicIntegerArray[] inFlights;
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head = 0;
+
+	private final AtomicBoolean waiting = new AtomicBoolean();
+
+	// count of Association streams currently mapped to this lane
+	private final AtomicInteger mappedStreams = new AtomicInteger();
+
+	private volatile boolean started = false;
+	private Thread thread;
+
+	/**
+	 * @param name
+	 *            name of the lane thread
+	 * @param size
+	 *            ring size, rounded up to a power of two
+	 * @param waitStrategy
+	 */
+	public DispatchLane(String name, int size, WaitStrategy waitStrategy) {
+		this.name = name;
+		this.waitStrategy = waitStrategy;
+
+		int capacity = 1;
+		while (capacity < size)
+			capacity <<= 1;
+
+		this.mask = capacity - 1;
+		this.associations = new AssociationImpl[capacity];
+		this.payloads = new PayloadData[capacity];
+		this.inFlights = new AtomicIntegerArray[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	public int getCapacity() {
+		return this.mask + 1;
+	}
+
+	/**
+	 * @return the count of messages waiting for delivery
+	 */
+	public int size() {
+		return (int) (this.tail.get() - this.head);
+	}
+
+	/**
+	 * @return the count of Association streams currently mapped to this lane
+	 */
+	public int getMappedStreams() {
+		return this.mappedStreams.get();
+	}
+
+	protected void addMappedStream() {
+		this.mappedStreams.incrementAndGet();
+	}
+
+	protected void removeMappedStream() {
+		this.mappedStreams.decrementAndGet();
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	public void start() {
+		this.started = true;
+		this.thread = new Thread(this, this.name);
+		this.thread.start();
+	}
+
+	/**
+	 * Stops accepting messages, lets the lane thread deliver what is already
+	 * published and waits up to timeout milliseconds for it to die
+	 */
+	public void stop(long timeout) throws InterruptedException {
+		this.started = false;
+		Thread t = this.thread;
+		if (t != null) {
+			LockSupport.unpark(t);
+			t.join(timeout);
+		}
+	}
+
+	/**
+	 * Publishes a received message for delivery to the Association's
+	 * listener. Waits for a free slot if the ring is full.
+	 * 
+	 * @return false if the lane is stopped
+	 */
+	public boolean publish(AssociationImpl association, PayloadData payloadData) {
+		return this.publish(association, payloadData, null);
+	}
+
+	/**
+	 * Publishes a received message like {@link #publish(AssociationImpl, PayloadData)}
+	 * and decrements the stream's counter in inFlight once it is delivered
+	 * 
+	 * @return false if the lane is stopped
+	 */
+	public boolean publish(AssociationImpl association, PayloadData payloadData, AtomicIntegerArray inFlight) {
+		if (!this.started)
+			return false;
+
+		while (!this.tryPublish(association, payloadData, inFlight)) {
+			if (!this.started)
+				return false;
+			Thread.yield();
+		}
+
+		if (this.waitStrategy == WaitStrategy.BLOCKING && this.waiting.get() && this.waiting.compareAndSet(true, false)) {
+			LockSupport.unpark(this.thread);
+		}
+		return true;
+	}
+
+	private boolean tryPublish(AssociationImpl association, PayloadData payloadData, AtomicIntegerArray inFlight) {
+		long pos = this.tail.get();
+		while (true) {
+			int index = (int) pos & this.mask;
+			long dif = this.sequences.get(index) - pos;
+			if (dif == 0) {
+				if (this.tail.compareAndSet(pos, pos + 1)) {
+					this.associations[index] = association;
+					this.payloads[index] = payloadData;
+					this.inFlights[index] = inFlight;
+					this.sequences.lazySet(index, pos + 1);
+					return true;
+				}
+			} else if (dif < 0) {
+				// ring is full
+				return false;
+			}
+			pos = this.tail.get();
+		}
+	}
+
+	@Override
+	public void run() {
+		int idle = 0;
+		while (true) {
+			if (this.deliverBatch() > 0) {
+				idle = 0;
+				continue;
+			}
+
+			if (!this.started && this.tail.get() == this.head)
+				break;
+
+			this.waitForPublish(idle++);
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("DispatchLane=%s stopped", this.name));
+		}
+	}
+
+	/**
+	 * Delivers every message published so far
+	 * 
+	 * @return the count of delivered messages
+	 */
+	private int deliverBatch() {
+		long pos = this.head;
+		int count = 0;
+		while (true) {
+			int index = (int) pos & this.mask;
+			if (this.sequences.get(index) != pos + 1)
+				break;
+
+			AssociationImpl association = this.associations[index];
+			PayloadData payloadData = this.payloads[index];
+			AtomicIntegerArray inFlight = this.inFlights[index];
+			this.associations[index] = null;
+			this.payloads[index] = null;
+			this.inFlights[index] = null;
+			this.head = pos + 1;
+			// frees the slot for the producers of the next lap
+			this.sequences.lazySet(index, pos + this.mask + 1);
+			pos++;
+			count++;
+
+			AssociationListener listener = association.getAssociationListener();
+			try {
+				listener.onPayload(association, payloadData);
+			} catch (Exception e) {
+				logger.error(String.format("Error while calling Listener for Association=%s.Payload=%s",
+						association.getName(), payloadData), e);
+			} finally {
+				if (inFlight != null)
+					inFlight.decrementAndGet(payloadData.getStreamNumber());
+			}
+		}
+		return count;
+	}
+
+	private void waitForPublish(int idle) {
+		switch (this.waitStrategy) {
+		case BUSY_SPIN:
+			break;
+		case YIELDING:
+			if (idle > SPIN_TRIES)
+				Thread.yield();
+			break;
+		default:
+			this.waiting.set(true);
+			if (this.started && this.tail.get() == this.head) {
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+			this.waiting.set(false);
+			break;
+		}
+	}
+}
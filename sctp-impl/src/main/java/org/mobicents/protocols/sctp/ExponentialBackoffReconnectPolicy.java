@@ -0,0 +1,93 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The first attempt is made at once, the next ones wait connectDelay of
+ * Management multiplied by multiplier at each attempt up to maxDelay. Each
+ * delay is spread randomly by +-jitter of its value so Associations lost
+ * together do not reconnect in lockstep.
+ */
+public class ExponentialBackoffReconnectPolicy implements ReconnectPolicy {
+
+	public static final long DEFAULT_MAX_DELAY = 60000;
+	public static final double DEFAULT_MULTIPLIER = 2;
+	public static final double DEFAULT_JITTER = 0.2;
+
+	private final long maxDelay;
+	private final double multiplier;
+	private final double jitter;
+
+	public ExponentialBackoffReconnectPolicy() {
+		this(DEFAULT_MAX_DELAY, DEFAULT_MULTIPLIER, DEFAULT_JITTER);
+	}
+
+	/**
+	 * @param maxDelay
+	 *            the cap of the delay in milliseconds, before jitter
+	 * @param multiplier
+	 *            growth of the delay at each attempt, at least 1
+	 * @param jitter
+	 *            random spread of the delay as a fraction of it, between 0
+	 *            and 1
+	 */
+	public ExponentialBackoffReconnectPolicy(long maxDelay, double multiplier, double jitter) {
+		if (multiplier < 1)
+			throw new IllegalArgumentException("multiplier must be at least 1");
+		if (jitter < 0 || jitter > 1)
+			throw new IllegalArgumentException("jitter must be between 0 and 1");
+
+		this.maxDelay = maxDelay;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public double getJitter() {
+		return jitter;
+	}
+
+	@Override
+	public long getReconnectDelay(int attempt, int connectDelay) {
+		if (attempt <= 0)
+			return 0;
+
+		double delay = connectDelay * Math.pow(this.multiplier, attempt - 1);
+		if (delay > this.maxDelay)
+			delay = this.maxDelay;
+
+		if (this.jitter > 0) {
+			delay *= 1 + this.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+		}
+		return (long) delay;
+	}
+}
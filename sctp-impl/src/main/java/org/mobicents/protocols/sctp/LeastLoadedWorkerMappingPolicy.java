@@ -0,0 +1,48 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+/**
+ * Maps a stream to the DispatchLane with the fewest queued messages at the
+ * time the Association comes up. Ties are broken by the count of streams
+ * already mapped to a lane, so idle lanes are filled evenly.
+ */
+public class LeastLoadedWorkerMappingPolicy implements WorkerMappingPolicy {
+
+	@Override
+	public int selectLane(AssociationImpl association, int streamNumber, DispatchLane[] lanes) {
+		int best = 0;
+		int bestSize = Integer.MAX_VALUE;
+		int bestStreams = Integer.MAX_VALUE;
+		for (int i = 0; i < lanes.length; i++) {
+			int size = lanes[i].size();
+			int streams = lanes[i].getMappedStreams();
+			if (size < bestSize || (size == bestSize && streams < bestStreams)) {
+				best = i;
+				bestSize = size;
+				bestStreams = streams;
+			}
+		}
+		return best;
+	}
+}
@@ -22,20 +22,20 @@
 
 package org.mobicents.protocols.sctp;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javolution.text.TextBuilder;
 import javolution.util.FastList;
@@ -87,20 +87,35 @@ public class ManagementImpl implements Management {
 	protected FastList<Server> servers = new FastList<Server>();
 	protected AssociationMap<String, Association> associations = new AssociationMap<String, Association>();
 
-	private FastList<ChangeRequest> pendingChanges = new FastList<ChangeRequest>();
-
-	// Create a new selector
-	private Selector socketSelector = null;
+	// SERVER Associations by server name, peer address and port for accept
+	protected final PeerAssociationIndex<AssociationImpl> peerAssociationIndex = new PeerAssociationIndex<AssociationImpl>();
 
-	private SelectorThread selectorThread = null;
+	// Selector shards. Each shard owns its own Selector, SelectorThread and
+	// pending changes; servers and associations are bound to a shard by name
+	private SelectorThread[] selectorThreads = null;
 
 	static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors() * 2;
 
+	private int selectorThreadCount = 1;
+
+	// If true send() tries to write a message from the calling thread when
+	// nothing is queued for the Association
+	private volatile boolean directSend = false;
+
 	private int workerThreads = DEFAULT_IO_THREADS;
 
 	private boolean singleThread = true;
 
-	private int workerThreadCount = 0;
+	// Ring size and wait strategy of the DispatchLanes used when singleThread
+	// is false
+	private int dispatchLaneSize = 8192;
+	private WaitStrategy dispatchWaitStrategy = WaitStrategy.BLOCKING;
+
+	// Chooses the DispatchLane of each stream when an Association comes up
+	private volatile WorkerMappingPolicy workerMappingPolicy = new RoundRobinWorkerMappingPolicy();
+
+	// Milliseconds between WorkerRebalancer passes, 0 disables rebalancing
+	private int workerRebalanceInterval = 0;
 
 	// Maximum IO Errors tolerated by Socket. After this the Socket will be
 	// closed and attempt will be made to open again
@@ -108,9 +123,43 @@ public class ManagementImpl implements Management {
 
 	private int connectDelay = 5000;
 
+	// Delay of connection attempts of CLIENT Associations which do not have
+	// their own ReconnectPolicy
+	private volatile ReconnectPolicy reconnectPolicy = new ExponentialBackoffReconnectPolicy();
+
+	// Max count of connection attempts in progress at a time, 0 if unlimited
+	private volatile int maxConcurrentConnects = 64;
+	private final AtomicInteger concurrentConnects = new AtomicInteger();
+
 	private int bufferSize = 8192;
 
-	private ExecutorService[] executorServices = null;
+	// Allocator for inbound buffers handed over to PayloadData
+	private ByteBufAllocator byteBufAllocator = PooledByteBufAllocator.DEFAULT;
+
+	// Limits of the transmit queue of each Association
+	private int txQueueMaxMessages = 4096;
+	private long txQueueMaxBytes = 4 * 1024 * 1024;
+
+	// Splits the byte stream of TCP Associations into messages, null if
+	// disabled
+	private MessageFramer messageFramer = null;
+
+	// Limits of the reassembly of SCTP messages received in parts
+	private int reassemblyMaxStreamBytes = 1024 * 1024;
+	private int reassemblyMaxAssociationBytes = 4 * 1024 * 1024;
+
+	// Max messages and bytes read from one Association per readiness event
+	private int readBudgetMessages = 16;
+	private int readBudgetBytes = 64 * 1024;
+
+	protected double[] congControl_DelayThreshold = new double[] { 2.5, 8, 14 };
+	protected double[] congControl_BackToNormalDelayThreshold = new double[] { 1.5, 5.5, 10 };
+
+	private FastList<CongestionListener> congestionListeners = new FastList<CongestionListener>();
+
+	private DispatchLane[] dispatchLanes = null;
+
+	private WorkerRebalancer workerRebalancer = null;
 
 	private FastList<ManagementEventListener> managementEventListeners = new FastList<ManagementEventListener>();
 
@@ -124,7 +173,6 @@ public class ManagementImpl implements Management {
 		binding.setAlias(ServerImpl.class, "server");
 		binding.setAlias(AssociationImpl.class, "association");
 		binding.setAlias(String.class, "string");
-		this.socketSelector = SelectorProvider.provider().openSelector();
 	}
 
 	/**
@@ -162,6 +210,75 @@ public class ManagementImpl implements Management {
         this.store();
 	}
 
+	/**
+	 * @return the ReconnectPolicy of CLIENT Associations which do not have
+	 *         their own one
+	 */
+	public ReconnectPolicy getReconnectPolicy() {
+		return reconnectPolicy;
+	}
+
+	/**
+	 * @param reconnectPolicy
+	 *            the ReconnectPolicy of CLIENT Associations which do not have
+	 *            their own one. ExponentialBackoffReconnectPolicy by default,
+	 *            FixedDelayReconnectPolicy waits connectDelay before each
+	 *            attempt
+	 */
+	public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+		if (reconnectPolicy == null)
+			throw new NullPointerException("ReconnectPolicy can not be null");
+
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	/**
+	 * @return the max count of connection attempts in progress at a time, 0
+	 *         if unlimited
+	 */
+	public int getMaxConcurrentConnects() {
+		return maxConcurrentConnects;
+	}
+
+	/**
+	 * @param maxConcurrentConnects
+	 *            the max count of connection attempts in progress at a time,
+	 *            0 if unlimited. Further attempts wait for a free slot
+	 */
+	public void setMaxConcurrentConnects(int maxConcurrentConnects) {
+		this.maxConcurrentConnects = maxConcurrentConnects;
+	}
+
+	/**
+	 * @return the count of connection attempts in progress
+	 */
+	public int getConcurrentConnects() {
+		return this.concurrentConnects.get();
+	}
+
+	/**
+	 * Takes a slot for a connection attempt
+	 * 
+	 * @return false if maxConcurrentConnects attempts are already in progress
+	 */
+	protected boolean acquireConnect() {
+		int max = this.maxConcurrentConnects;
+		while (true) {
+			int current = this.concurrentConnects.get();
+			if (max > 0 && current >= max)
+				return false;
+			if (this.concurrentConnects.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Gives back the slot of a finished connection attempt
+	 */
+	protected void releaseConnect() {
+		this.concurrentConnects.decrementAndGet();
+	}
+
 	/**
 	 * @return the workerThreads
 	 */
@@ -185,6 +302,47 @@ public class ManagementImpl implements Management {
 //		this.store();
 	}
 
+	/**
+	 * @return the count of selector shards (each shard has its own Selector
+	 *         and SelectorThread)
+	 */
+	public int getSelectorThreadCount() {
+		return selectorThreadCount;
+	}
+
+	/**
+	 * @param selectorThreadCount
+	 *            the count of selector shards to set. Values less than 1 mean
+	 *            one selector per available processor
+	 */
+	public void setSelectorThreadCount(int selectorThreadCount) throws Exception {
+		if (this.started)
+			throw new Exception("SelectorThreadCount parameter can be updated only when SCTP stack is NOT running");
+
+		if (selectorThreadCount < 1) {
+			selectorThreadCount = Runtime.getRuntime().availableProcessors();
+		}
+		this.selectorThreadCount = selectorThreadCount;
+	}
+
+	/**
+	 * @return the directSend
+	 */
+	public boolean isDirectSend() {
+		return directSend;
+	}
+
+	/**
+	 * @param directSend
+	 *            if true Association.send() writes a message directly from
+	 *            the calling thread when the Association has nothing queued.
+	 *            The message is queued for the SelectorThread as before on
+	 *            partial write or when the SelectorThread is writing
+	 */
+	public void setDirectSend(boolean directSend) {
+		this.directSend = directSend;
+	}
+
 	/**
 	 * @return the maxIOErrors
 	 */
@@ -223,6 +381,87 @@ public class ManagementImpl implements Management {
 //		this.store();
 	}
 
+	/**
+	 * @return the policy mapping Association streams to DispatchLanes
+	 */
+	public WorkerMappingPolicy getWorkerMappingPolicy() {
+		return workerMappingPolicy;
+	}
+
+	/**
+	 * @param workerMappingPolicy
+	 *            the policy mapping Association streams to DispatchLanes. Used
+	 *            for Associations coming up after this call
+	 */
+	public void setWorkerMappingPolicy(WorkerMappingPolicy workerMappingPolicy) throws Exception {
+		if (workerMappingPolicy == null)
+			throw new Exception("WorkerMappingPolicy must not be null");
+
+		this.workerMappingPolicy = workerMappingPolicy;
+	}
+
+	/**
+	 * @return milliseconds between WorkerRebalancer passes, 0 if disabled
+	 */
+	public int getWorkerRebalanceInterval() {
+		return workerRebalanceInterval;
+	}
+
+	/**
+	 * @param workerRebalanceInterval
+	 *            milliseconds between WorkerRebalancer passes, 0 disables
+	 *            rebalancing
+	 */
+	public void setWorkerRebalanceInterval(int workerRebalanceInterval) throws Exception {
+		if (this.started)
+			throw new Exception("WorkerRebalanceInterval parameter can be updated only when SCTP stack is NOT running");
+		if (workerRebalanceInterval < 0)
+			workerRebalanceInterval = 0;
+
+		this.workerRebalanceInterval = workerRebalanceInterval;
+	}
+
+	/**
+	 * @return the ring size of each DispatchLane
+	 */
+	public int getDispatchLaneSize() {
+		return dispatchLaneSize;
+	}
+
+	/**
+	 * @param dispatchLaneSize
+	 *            the ring size of each DispatchLane, rounded up to a power of
+	 *            two
+	 */
+	public void setDispatchLaneSize(int dispatchLaneSize) throws Exception {
+		if (this.started)
+			throw new Exception("DispatchLaneSize parameter can be updated only when SCTP stack is NOT running");
+		if (dispatchLaneSize < 1)
+			throw new Exception(String.format("DispatchLaneSize must be positive, passed value=%d", dispatchLaneSize));
+
+		this.dispatchLaneSize = dispatchLaneSize;
+	}
+
+	/**
+	 * @return how DispatchLane threads wait for received messages
+	 */
+	public WaitStrategy getDispatchWaitStrategy() {
+		return dispatchWaitStrategy;
+	}
+
+	/**
+	 * @param dispatchWaitStrategy
+	 *            how DispatchLane threads wait for received messages
+	 */
+	public void setDispatchWaitStrategy(WaitStrategy dispatchWaitStrategy) throws Exception {
+		if (this.started)
+			throw new Exception("DispatchWaitStrategy parameter can be updated only when SCTP stack is NOT running");
+		if (dispatchWaitStrategy == null)
+			throw new Exception("DispatchWaitStrategy must not be null");
+
+		this.dispatchWaitStrategy = dispatchWaitStrategy;
+	}
+
     @Override
     public int getBufferSize() {
         return bufferSize;
@@ -238,6 +477,181 @@ public class ManagementImpl implements Management {
         this.bufferSize = bufferSize;
     }
 
+	/**
+	 * @return the allocator used for buffers of received PayloadData
+	 */
+	public ByteBufAllocator getByteBufAllocator() {
+		return byteBufAllocator;
+	}
+
+	/**
+	 * @param byteBufAllocator
+	 *            the allocator used for buffers of received PayloadData
+	 */
+	public void setByteBufAllocator(ByteBufAllocator byteBufAllocator) throws Exception {
+		if (this.started)
+			throw new Exception("ByteBufAllocator can be updated only when SCTP stack is NOT running");
+		if (byteBufAllocator == null)
+			throw new Exception("ByteBufAllocator cannot be null");
+
+		this.byteBufAllocator = byteBufAllocator;
+	}
+
+	/**
+	 * @return the max count of messages queued for sending in one
+	 *         Association
+	 */
+	public int getTxQueueMaxMessages() {
+		return txQueueMaxMessages;
+	}
+
+	/**
+	 * @param txQueueMaxMessages
+	 *            the max count of messages queued for sending in one
+	 *            Association
+	 */
+	public void setTxQueueMaxMessages(int txQueueMaxMessages) throws Exception {
+		if (this.started)
+			throw new Exception("TxQueueMaxMessages parameter can be updated only when SCTP stack is NOT running");
+		if (txQueueMaxMessages < 1)
+			throw new Exception("TxQueueMaxMessages must be greater than 0");
+
+		this.txQueueMaxMessages = txQueueMaxMessages;
+	}
+
+	/**
+	 * @return the MessageFramer of TCP Associations, null if received data is
+	 *         delivered as it is read
+	 */
+	public MessageFramer getMessageFramer() {
+		return messageFramer;
+	}
+
+	/**
+	 * @param messageFramer
+	 *            splits the byte stream of TCP Associations into messages, for
+	 *            example SigtranMessageFramer for M3UA or SUA. null (the
+	 *            default) delivers received data as it is read
+	 */
+	public void setMessageFramer(MessageFramer messageFramer) throws Exception {
+		if (this.started)
+			throw new Exception("MessageFramer parameter can be updated only when SCTP stack is NOT running");
+
+		this.messageFramer = messageFramer;
+	}
+
+	/**
+	 * @return the max count of payload bytes queued for sending in one
+	 *         Association
+	 */
+	public long getTxQueueMaxBytes() {
+		return txQueueMaxBytes;
+	}
+
+	/**
+	 * @param txQueueMaxBytes
+	 *            the max count of payload bytes queued for sending in one
+	 *            Association
+	 */
+	public void setTxQueueMaxBytes(long txQueueMaxBytes) throws Exception {
+		if (this.started)
+			throw new Exception("TxQueueMaxBytes parameter can be updated only when SCTP stack is NOT running");
+		if (txQueueMaxBytes < 1)
+			throw new Exception("TxQueueMaxBytes must be greater than 0");
+
+		this.txQueueMaxBytes = txQueueMaxBytes;
+	}
+
+	/**
+	 * @return the max size of a SCTP message reassembled from parts
+	 */
+	public int getReassemblyMaxStreamBytes() {
+		return reassemblyMaxStreamBytes;
+	}
+
+	/**
+	 * @param reassemblyMaxStreamBytes
+	 *            the max size of a SCTP message reassembled from parts. Bigger
+	 *            messages are dropped
+	 */
+	public void setReassemblyMaxStreamBytes(int reassemblyMaxStreamBytes) throws Exception {
+		if (this.started)
+			throw new Exception("ReassemblyMaxStreamBytes parameter can be updated only when SCTP stack is NOT running");
+		if (reassemblyMaxStreamBytes < 1)
+			throw new Exception("ReassemblyMaxStreamBytes must be greater than 0");
+
+		this.reassemblyMaxStreamBytes = reassemblyMaxStreamBytes;
+	}
+
+	/**
+	 * @return the max count of bytes pending reassembly on all streams of one
+	 *         Association
+	 */
+	public int getReassemblyMaxAssociationBytes() {
+		return reassemblyMaxAssociationBytes;
+	}
+
+	/**
+	 * @param reassemblyMaxAssociationBytes
+	 *            the max count of bytes pending reassembly on all streams of
+	 *            one Association
+	 */
+	public void setReassemblyMaxAssociationBytes(int reassemblyMaxAssociationBytes) throws Exception {
+		if (this.started)
+			throw new Exception(
+					"ReassemblyMaxAssociationBytes parameter can be updated only when SCTP stack is NOT running");
+		if (reassemblyMaxAssociationBytes < 1)
+			throw new Exception("ReassemblyMaxAssociationBytes must be greater than 0");
+
+		this.reassemblyMaxAssociationBytes = reassemblyMaxAssociationBytes;
+	}
+
+	/**
+	 * @return the max count of messages read from one Association per
+	 *         readiness event
+	 */
+	public int getReadBudgetMessages() {
+		return readBudgetMessages;
+	}
+
+	/**
+	 * @param readBudgetMessages
+	 *            the max count of messages read from one Association per
+	 *            readiness event before the SelectorThread serves the other
+	 *            Associations. 1 reads one message per select()
+	 */
+	public void setReadBudgetMessages(int readBudgetMessages) throws Exception {
+		if (this.started)
+			throw new Exception("ReadBudgetMessages parameter can be updated only when SCTP stack is NOT running");
+		if (readBudgetMessages < 1)
+			throw new Exception("ReadBudgetMessages must be greater than 0");
+
+		this.readBudgetMessages = readBudgetMessages;
+	}
+
+	/**
+	 * @return the max count of bytes read from one Association per readiness
+	 *         event
+	 */
+	public int getReadBudgetBytes() {
+		return readBudgetBytes;
+	}
+
+	/**
+	 * @param readBudgetBytes
+	 *            the max count of bytes read from one Association per
+	 *            readiness event before the SelectorThread serves the other
+	 *            Associations
+	 */
+	public void setReadBudgetBytes(int readBudgetBytes) throws Exception {
+		if (this.started)
+			throw new Exception("ReadBudgetBytes parameter can be updated only when SCTP stack is NOT running");
+		if (readBudgetBytes < 1)
+			throw new Exception("ReadBudgetBytes must be greater than 0");
+
+		this.readBudgetBytes = readBudgetBytes;
+	}
+
 	public ServerListener getServerListener() {
 		return serverListener;
 	}
@@ -293,6 +707,14 @@ public class ManagementImpl implements Management {
 
 			logger.info(String.format("SCTP configuration file path %s", persistFile.toString()));
 
+			// Selector shards must exist before load() as persisted servers and
+			// associations are registered with them
+			this.selectorThreads = new SelectorThread[this.selectorThreadCount];
+			for (int i = 0; i < this.selectorThreadCount; i++) {
+				this.selectorThreads[i] = new SelectorThread(SelectorProvider.provider().openSelector(), this, i);
+				this.selectorThreads[i].setStarted(true);
+			}
+
 			try {
 				this.load();
 			} catch (FileNotFoundException e) {
@@ -301,21 +723,27 @@ public class ManagementImpl implements Management {
 
 			if (!this.singleThread) {
 				// If not single thread model we create worker threads
-				this.executorServices = new ExecutorService[this.workerThreads];
+				this.dispatchLanes = new DispatchLane[this.workerThreads];
 				for (int i = 0; i < this.workerThreads; i++) {
-					this.executorServices[i] = Executors.newSingleThreadExecutor();
+					this.dispatchLanes[i] = new DispatchLane(String.format("DispatchLane-%s-%d", this.name, i),
+							this.dispatchLaneSize, this.dispatchWaitStrategy);
+					this.dispatchLanes[i].start();
 				}
-			}
-			this.selectorThread = new SelectorThread(this.socketSelector, this);
-			this.selectorThread.setStarted(true);
 
-			(new Thread(this.selectorThread)).start();
+				if (this.workerRebalanceInterval > 0) {
+					this.workerRebalancer = new WorkerRebalancer(this, this.workerRebalanceInterval);
+					this.workerRebalancer.start();
+				}
+			}
+			for (int i = 0; i < this.selectorThreads.length; i++) {
+				(new Thread(this.selectorThreads[i], String.format("SelectorThread-%s-%d", this.name, i))).start();
+			}
 
 			this.started = true;
 
 			if (logger.isInfoEnabled()) {
-				logger.info(String.format("Started SCTP Management=%s WorkerThreads=%d SingleThread=%s", this.name,
-						(this.singleThread ? 0 : this.workerThreads), this.singleThread));
+				logger.info(String.format("Started SCTP Management=%s SelectorThreads=%d WorkerThreads=%d SingleThread=%s", this.name,
+						this.selectorThreads.length, (this.singleThread ? 0 : this.workerThreads), this.singleThread));
 			}
 
 			for (ManagementEventListener lstr : managementEventListeners) {
@@ -367,15 +795,11 @@ public class ManagementImpl implements Management {
 			}
 		}
 
-		if (this.executorServices != null) {
-			for (int i = 0; i < this.executorServices.length; i++) {
-				this.executorServices[i].shutdown();
-			}
+		for (int i = 0; i < this.selectorThreads.length; i++) {
+			this.selectorThreads[i].setStarted(false);
+			this.selectorThreads[i].getSelector().wakeup(); // Wakeup selector so SelectorThread dies
 		}
 
-		this.selectorThread.setStarted(false);
-		this.socketSelector.wakeup(); // Wakeup selector so SelectorThread dies
-
 		// waiting till stopping associations
 		for (int i1 = 0; i1 < 20; i1++) {
 			boolean assConnected = false;
@@ -391,20 +815,25 @@ public class ManagementImpl implements Management {
 			Thread.sleep(100);
 		}
 
-		// Graceful shutdown for each of Executors
-		if (this.executorServices != null) {
-			for (int i = 0; i < this.executorServices.length; i++) {
-				if (!this.executorServices[i].isTerminated()) {
-					if (logger.isInfoEnabled()) {
-						logger.info("Waiting for worker thread to die gracefully ....");
-					}
-					try {
-						this.executorServices[i].awaitTermination(5000, TimeUnit.MILLISECONDS);
-					} catch (InterruptedException e) {
-						// Do we care?
-					}
+		if (this.workerRebalancer != null) {
+			this.workerRebalancer.stop();
+			this.workerRebalancer = null;
+		}
+
+		// Graceful shutdown for each of DispatchLanes, already published
+		// messages are still delivered
+		if (this.dispatchLanes != null) {
+			for (int i = 0; i < this.dispatchLanes.length; i++) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Waiting for worker thread to die gracefully ....");
+				}
+				try {
+					this.dispatchLanes[i].stop(5000);
+				} catch (InterruptedException e) {
+					// Do we care?
 				}
 			}
+			this.dispatchLanes = null;
 		}
 
 		this.started = false;
@@ -439,6 +868,16 @@ public class ManagementImpl implements Management {
                         .read(NettySctpManagementImpl.CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_2, Double.class);
                 Double valTB3 = reader
                         .read(NettySctpManagementImpl.CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_3, Double.class);
+                if (valTH1 != null && valTH2 != null && valTH3 != null && valTB1 != null && valTB2 != null && valTB3 != null) {
+                    this.congControl_DelayThreshold = new double[3];
+                    this.congControl_DelayThreshold[0] = valTH1;
+                    this.congControl_DelayThreshold[1] = valTH2;
+                    this.congControl_DelayThreshold[2] = valTH3;
+                    this.congControl_BackToNormalDelayThreshold = new double[3];
+                    this.congControl_BackToNormalDelayThreshold[0] = valTB1;
+                    this.congControl_BackToNormalDelayThreshold[1] = valTB2;
+                    this.congControl_BackToNormalDelayThreshold[2] = valTB3;
+                }
 
                 // TODO: revive this test when we introduce of parameters persistense 
 //                Boolean valB = reader.read(NettySctpManagementImpl.OPTION_SCTP_DISABLE_FRAGMENTS, Boolean.class);
@@ -470,9 +909,11 @@ public class ManagementImpl implements Management {
 			}
 
 			this.associations = reader.read(ASSOCIATIONS, AssociationMap.class);
+			this.peerAssociationIndex.clear();
 			for (FastMap.Entry<String, Association> n = this.associations.head(), end = this.associations.tail(); (n = n.getNext()) != end;) {
 				AssociationImpl associationTemp = (AssociationImpl) n.getValue();
 				associationTemp.setManagement(this);
+				this.peerAssociationIndex.add(associationTemp);
 			}
 
 		} catch (XMLStreamException ex) {
@@ -493,6 +934,20 @@ public class ManagementImpl implements Management {
 //            writer.write(this.workerThreads, WORKER_THREADS_PROP, Integer.class);
 //            writer.write(this.singleThread, SINGLE_THREAD_PROP, Boolean.class);
 
+            if (this.congControl_DelayThreshold != null && this.congControl_DelayThreshold.length == 3) {
+                writer.write(this.congControl_DelayThreshold[0], NettySctpManagementImpl.CONG_CONTROL_DELAY_THRESHOLD_1, Double.class);
+                writer.write(this.congControl_DelayThreshold[1], NettySctpManagementImpl.CONG_CONTROL_DELAY_THRESHOLD_2, Double.class);
+                writer.write(this.congControl_DelayThreshold[2], NettySctpManagementImpl.CONG_CONTROL_DELAY_THRESHOLD_3, Double.class);
+            }
+            if (this.congControl_BackToNormalDelayThreshold != null && this.congControl_BackToNormalDelayThreshold.length == 3) {
+                writer.write(this.congControl_BackToNormalDelayThreshold[0],
+                        NettySctpManagementImpl.CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_1, Double.class);
+                writer.write(this.congControl_BackToNormalDelayThreshold[1],
+                        NettySctpManagementImpl.CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_2, Double.class);
+                writer.write(this.congControl_BackToNormalDelayThreshold[2],
+                        NettySctpManagementImpl.CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_3, Double.class);
+            }
+
 			writer.write(this.servers, SERVERS, FastList.class);
 			writer.write(this.associations, ASSOCIATIONS, AssociationMap.class);
 
@@ -786,6 +1241,7 @@ public class ManagementImpl implements Management {
 			newAssociations.put(assocName, association);
 			this.associations = newAssociations;
 			// this.associations.put(assocName, association);
+			this.peerAssociationIndex.add(association);
 
 			FastList<String> newAssociations2 = new FastList<String>();
 			newAssociations2.addAll(((ServerImpl) server).associations);
@@ -977,6 +1433,7 @@ public class ManagementImpl implements Management {
 			newAssociations.remove(assocName);
 			this.associations = newAssociations;
 			// this.associations.remove(assocName);
+			this.peerAssociationIndex.remove((AssociationImpl) association);
 
 			if (((AssociationImpl) association).getAssociationType() == AssociationType.SERVER) {
 				for (FastList.Node<Server> n = this.servers.head(), end = this.servers.tail(); (n = n.getNext()) != end;) {
@@ -1014,104 +1471,179 @@ public class ManagementImpl implements Management {
 	}
 
 	/**
-	 * @return the pendingChanges
+	 * Returns the selector shard owning the passed Association. Named
+	 * associations are bound by name, anonymous ones by peer address and port,
+	 * so the assignment is stable for the lifetime of the association.
+	 * 
+	 * @param association
+	 * @return
 	 */
-	protected FastList<ChangeRequest> getPendingChanges() {
-		return pendingChanges;
+	protected SelectorThread getSelectorThread(AssociationImpl association) {
+		String assocName = association.getName();
+		int hash;
+		if (assocName != null)
+			hash = assocName.hashCode();
+		else
+			hash = 31 * association.getPeerAddress().hashCode() + association.getPeerPort();
+		return this.getSelectorThread(hash);
 	}
 
 	/**
-	 * @return the socketSelector
+	 * Returns the selector shard owning the passed Server
+	 * 
+	 * @param server
+	 * @return
 	 */
-	protected Selector getSocketSelector() {
-		return socketSelector;
+	protected SelectorThread getSelectorThread(ServerImpl server) {
+		return this.getSelectorThread(server.getName().hashCode());
+	}
+
+	private SelectorThread getSelectorThread(int hash) {
+		SelectorThread[] shards = this.selectorThreads;
+		return shards[(hash & 0x7fffffff) % shards.length];
 	}
 
-	protected void populateWorkerThread(int workerThreadTable[]) {
+	/**
+	 * Fills the DispatchLane index of each stream of an Association using the
+	 * WorkerMappingPolicy
+	 * 
+	 * @return the DispatchLanes the table indexes into, null in single thread
+	 *         mode
+	 */
+	protected DispatchLane[] populateWorkerThread(AssociationImpl association, int workerThreadTable[]) {
+		DispatchLane[] lanes = this.dispatchLanes;
+		if (lanes == null)
+			return null;
+
+		WorkerMappingPolicy policy = this.workerMappingPolicy;
 		for (int count = 0; count < workerThreadTable.length; count++) {
-			if (this.workerThreadCount == this.workerThreads) {
-				this.workerThreadCount = 0;
+			int lane = policy.selectLane(association, count, lanes);
+			if (lane < 0 || lane >= lanes.length) {
+				logger.warn(String.format("WorkerMappingPolicy=%s returned invalid lane=%d for Association=%s stream=%d",
+						policy.getClass().getName(), lane, association.getName(), count));
+				lane = count % lanes.length;
 			}
+			workerThreadTable[count] = lane;
+			lanes[lane].addMappedStream();
+		}
+		return lanes;
+	}
+
+	protected DispatchLane[] getDispatchLanes() {
+		return this.dispatchLanes;
+	}
 
-			workerThreadTable[count] = this.workerThreadCount;
-			this.workerThreadCount++;
+	/**
+	 * @return the count of messages waiting for delivery in each DispatchLane,
+	 *         empty in single thread mode
+	 */
+	public int[] getWorkerQueueDepths() {
+		DispatchLane[] lanes = this.dispatchLanes;
+		if (lanes == null)
+			return new int[0];
+
+		int[] depths = new int[lanes.length];
+		for (int i = 0; i < lanes.length; i++) {
+			depths[i] = lanes[i].size();
 		}
+		return depths;
 	}
 
-	protected ExecutorService getExecutorService(int index) {
-		return this.executorServices[index];
+	protected DispatchLane getDispatchLane(int index) {
+		return this.dispatchLanes[index];
 	}
 
     @Override
     public double getCongControl_DelayThreshold_1() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_DelayThreshold[0];
     }
 
     @Override
     public double getCongControl_DelayThreshold_2() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_DelayThreshold[1];
     }
 
     @Override
     public double getCongControl_DelayThreshold_3() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_DelayThreshold[2];
     }
 
     @Override
     public void setCongControl_DelayThreshold_1(double val) throws Exception {
-        // TODO Auto-generated method stub
-        
+        if (!this.started)
+            throw new Exception("CongControl_DelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_DelayThreshold[0] = val;
+
+        this.store();
     }
 
     @Override
     public void setCongControl_DelayThreshold_2(double val) throws Exception {
-        // TODO Auto-generated method stub
-        
+        if (!this.started)
+            throw new Exception("CongControl_DelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_DelayThreshold[1] = val;
+
+        this.store();
     }
 
     @Override
     public void setCongControl_DelayThreshold_3(double val) throws Exception {
-        // TODO Auto-generated method stub
-        
+        if (!this.started)
+            throw new Exception("CongControl_DelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_DelayThreshold[2] = val;
+
+        this.store();
     }
 
     @Override
     public double getCongControl_BackToNormalDelayThreshold_1() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_BackToNormalDelayThreshold[0];
     }
 
     @Override
     public double getCongControl_BackToNormalDelayThreshold_2() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_BackToNormalDelayThreshold[1];
     }
 
     @Override
     public double getCongControl_BackToNormalDelayThreshold_3() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_BackToNormalDelayThreshold[2];
     }
 
     @Override
     public void setCongControl_BackToNormalDelayThreshold_1(double val) throws Exception {
-        // TODO Auto-generated method stub
-        
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalDelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_BackToNormalDelayThreshold[0] = val;
+
+        this.store();
     }
 
     @Override
     public void setCongControl_BackToNormalDelayThreshold_2(double val) throws Exception {
-        // TODO Auto-generated method stub
-        
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalDelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_BackToNormalDelayThreshold[1] = val;
+
+        this.store();
     }
 
     @Override
     public void setCongControl_BackToNormalDelayThreshold_3(double val) throws Exception {
-        // TODO Auto-generated method stub
-        
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalDelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_BackToNormalDelayThreshold[2] = val;
+
+        this.store();
     }
 
     @Override
@@ -1212,13 +1744,31 @@ public class ManagementImpl implements Management {
 
     @Override
     public void addCongestionListener(CongestionListener listener) {
-        // TODO Auto-generated method stub
-        
+        synchronized (this) {
+            if (this.congestionListeners.contains(listener))
+                return;
+
+            FastList<CongestionListener> newCongestionListeners = new FastList<CongestionListener>();
+            newCongestionListeners.addAll(this.congestionListeners);
+            newCongestionListeners.add(listener);
+            this.congestionListeners = newCongestionListeners;
+        }
     }
 
     @Override
     public void removeCongestionListener(CongestionListener listener) {
-        // TODO Auto-generated method stub
-        
+        synchronized (this) {
+            if (!this.congestionListeners.contains(listener))
+                return;
+
+            FastList<CongestionListener> newCongestionListeners = new FastList<CongestionListener>();
+            newCongestionListeners.addAll(this.congestionListeners);
+            newCongestionListeners.remove(listener);
+            this.congestionListeners = newCongestionListeners;
+        }
+    }
+
+    protected FastList<CongestionListener> getCongestionListeners() {
+        return congestionListeners;
     }
 }
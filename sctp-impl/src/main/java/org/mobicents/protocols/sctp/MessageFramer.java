@@ -0,0 +1,51 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Splits the byte stream of a TCP Association into messages. Unlike SCTP,
+ * TCP keeps no message boundaries, so without a MessageFramer each read is
+ * delivered as it is and a message may be split or merged with others.
+ * 
+ * Implementations must be stateless as one instance serves all TCP
+ * Associations of a Management.
+ */
+public interface MessageFramer {
+
+	/**
+	 * Returns the length of the message starting at the readerIndex of buf.
+	 * Must not change the indexes of buf.
+	 * 
+	 * @param buf
+	 *            received bytes not yet delivered
+	 * @return the message length including its header, or -1 if more bytes
+	 *         are needed to know it
+	 * @throws Exception
+	 *             if the bytes are not a valid message header. The connection
+	 *             is then closed as the message boundaries are lost
+	 */
+	int getMessageLength(ByteBuf buf) throws Exception;
+}
@@ -0,0 +1,110 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationType;
+
+/**
+ * Index of SERVER Associations by (server name, peer address, peer port) so
+ * that an incoming connection is matched with its provisioned Association
+ * in constant time. Maintained by Management on add and remove of
+ * Associations and shared by the NIO and the Netty stacks.
+ * 
+ * Peer addresses are matched as provisioned, i.e. against
+ * InetAddress.getHostAddress() of the connecting peer.
+ */
+public class PeerAssociationIndex<T extends Association> {
+
+	private final ConcurrentHashMap<PeerKey, T> index = new ConcurrentHashMap<PeerKey, T>();
+
+	/**
+	 * Adds an Association. Associations other than SERVER are ignored
+	 */
+	public void add(T association) {
+		if (association.getAssociationType() != AssociationType.SERVER || association.getServerName() == null
+				|| association.getPeerAddress() == null)
+			return;
+
+		this.index.put(new PeerKey(association.getServerName(), association.getPeerAddress(), association.getPeerPort()),
+				association);
+	}
+
+	public void remove(T association) {
+		if (association.getAssociationType() != AssociationType.SERVER || association.getServerName() == null
+				|| association.getPeerAddress() == null)
+			return;
+
+		this.index.remove(new PeerKey(association.getServerName(), association.getPeerAddress(), association.getPeerPort()),
+				association);
+	}
+
+	public void clear() {
+		this.index.clear();
+	}
+
+	public int size() {
+		return this.index.size();
+	}
+
+	/**
+	 * @return the provisioned SERVER Association of the Server for the peer
+	 *         or null
+	 */
+	public T find(String serverName, String peerAddress, int peerPort) {
+		return this.index.get(new PeerKey(serverName, peerAddress, peerPort));
+	}
+
+	private static final class PeerKey {
+		private final String serverName;
+		private final String peerAddress;
+		private final int peerPort;
+		private final int hash;
+
+		PeerKey(String serverName, String peerAddress, int peerPort) {
+			this.serverName = serverName;
+			this.peerAddress = peerAddress;
+			this.peerPort = peerPort;
+			this.hash = 31 * (31 * serverName.hashCode() + peerAddress.hashCode()) + peerPort;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof PeerKey))
+				return false;
+			PeerKey other = (PeerKey) obj;
+			return this.peerPort == other.peerPort && this.serverName.equals(other.serverName)
+					&& this.peerAddress.equals(other.peerAddress);
+		}
+	}
+}
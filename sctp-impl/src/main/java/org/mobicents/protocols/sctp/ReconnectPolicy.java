@@ -0,0 +1,41 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+/**
+ * Decides how long a CLIENT Association waits before its next connection
+ * attempt. Implementations must be stateless as one instance may serve many
+ * Associations, the Associations keep the count of attempts.
+ */
+public interface ReconnectPolicy {
+
+	/**
+	 * @param attempt
+	 *            count of connection attempts already made since the
+	 *            Association was started or last up, 0 for the first one
+	 * @param connectDelay
+	 *            the connectDelay of Management in milliseconds
+	 * @return the delay before the attempt in milliseconds
+	 */
+	long getReconnectDelay(int attempt, int connectDelay);
+}
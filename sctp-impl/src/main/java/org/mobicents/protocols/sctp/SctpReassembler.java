@@ -0,0 +1,178 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reassembles SCTP messages delivered in parts (partial delivery, or a
+ * message bigger than the receive buffer) per stream. Parts are collected in
+ * a CompositeByteBuf, so they are not copied.
+ * 
+ * The bytes pending per stream and per Association are capped. When a cap
+ * would be exceeded the message is dropped: the collected parts are released
+ * and the following parts of the stream are discarded up to the last part
+ * of the message.
+ * 
+ * Not thread safe, an instance serves one Association and is used by the
+ * thread reading it.
+ */
+public class SctpReassembler {
+
+	private static final Logger logger = Logger.getLogger(SctpReassembler.class);
+
+	// Parts held by a CompositeByteBuf before it consolidates them
+	private static final int MAX_COMPONENTS = 1024;
+
+	private final String name;
+	private final ByteBufAllocator allocator;
+	private final int maxStreamBytes;
+	private final int maxAssociationBytes;
+
+	private CompositeByteBuf[] pending = new CompositeByteBuf[0];
+	private boolean[] discarding = new boolean[0];
+	private int pendingBytes = 0;
+
+	private long droppedMessages = 0;
+
+	/**
+	 * @param name
+	 *            the Association name, for logging
+	 * @param allocator
+	 * @param maxStreamBytes
+	 *            max size of a reassembled message
+	 * @param maxAssociationBytes
+	 *            max bytes pending reassembly on all streams together
+	 */
+	public SctpReassembler(String name, ByteBufAllocator allocator, int maxStreamBytes, int maxAssociationBytes) {
+		this.name = name;
+		this.allocator = allocator;
+		this.maxStreamBytes = maxStreamBytes;
+		this.maxAssociationBytes = maxAssociationBytes;
+	}
+
+	/**
+	 * Takes a received part. The ownership of part passes to the reassembler.
+	 * 
+	 * @param streamNumber
+	 * @param part
+	 *            received bytes
+	 * @param complete
+	 *            true if part is the last part of its message
+	 * @return the whole message once its last part is received, otherwise null
+	 */
+	public ByteBuf reassemble(int streamNumber, ByteBuf part, boolean complete) {
+		if (streamNumber >= this.pending.length)
+			this.ensureStreams(streamNumber + 1);
+
+		if (this.discarding[streamNumber]) {
+			part.release();
+			if (complete)
+				this.discarding[streamNumber] = false;
+			return null;
+		}
+
+		CompositeByteBuf message = this.pending[streamNumber];
+		if (message == null && complete) {
+			// the usual case, a whole message
+			return part;
+		}
+
+		int len = part.readableBytes();
+		int messageBytes = (message == null ? 0 : message.readableBytes()) + len;
+		if (messageBytes > this.maxStreamBytes || this.pendingBytes + len > this.maxAssociationBytes) {
+			this.droppedMessages++;
+			logger.warn(String.format(
+					"Dropping message of stream=%d for Association=%s: %d bytes exceeds the reassembly limits, stream=%d association=%d",
+					streamNumber, this.name, messageBytes, this.maxStreamBytes, this.maxAssociationBytes));
+
+			part.release();
+			if (message != null) {
+				this.pendingBytes -= message.readableBytes();
+				this.pending[streamNumber] = null;
+				message.release();
+			}
+			if (!complete)
+				this.discarding[streamNumber] = true;
+			return null;
+		}
+
+		if (message == null) {
+			message = this.allocator.compositeBuffer(MAX_COMPONENTS);
+			this.pending[streamNumber] = message;
+		}
+		message.addComponent(part);
+		message.writerIndex(message.writerIndex() + len);
+		this.pendingBytes += len;
+
+		if (!complete)
+			return null;
+
+		this.pending[streamNumber] = null;
+		this.pendingBytes -= message.readableBytes();
+		return message;
+	}
+
+	/**
+	 * @return bytes of not yet complete messages
+	 */
+	public int getPendingBytes() {
+		return pendingBytes;
+	}
+
+	/**
+	 * @return count of messages dropped as they exceeded the limits
+	 */
+	public long getDroppedMessages() {
+		return droppedMessages;
+	}
+
+	/**
+	 * Releases the parts of not yet complete messages
+	 */
+	public void release() {
+		for (int i = 0; i < this.pending.length; i++) {
+			if (this.pending[i] != null) {
+				this.pending[i].release();
+				this.pending[i] = null;
+			}
+			this.discarding[i] = false;
+		}
+		this.pendingBytes = 0;
+	}
+
+	private void ensureStreams(int count) {
+		CompositeByteBuf[] newPending = new CompositeByteBuf[count];
+		System.arraycopy(this.pending, 0, newPending, 0, this.pending.length);
+		this.pending = newPending;
+
+		boolean[] newDiscarding = new boolean[count];
+		System.arraycopy(this.discarding, 0, newDiscarding, 0, this.discarding.length);
+		this.discarding = newDiscarding;
+	}
+}
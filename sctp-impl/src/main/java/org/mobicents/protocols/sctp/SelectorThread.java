@@ -32,12 +32,12 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
-
-import javolution.util.FastList;
-import javolution.util.FastMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
@@ -63,14 +63,83 @@ public class SelectorThread implements Runnable {
 
 	protected volatile boolean started = true;
 
+	/**
+	 * Index of this SelectorThread among the selector shards of Management
+	 */
+	private final int index;
+
+	/**
+	 * Changes requested by other threads. Producers (senders, management,
+	 * other shards) only enqueue, this SelectorThread is the only consumer.
+	 */
+	private final ConcurrentLinkedQueue<ChangeRequest> pendingChanges = new ConcurrentLinkedQueue<ChangeRequest>();
+
+	// Resolution and lap of the connect timers
+	private static final long TIMER_TICK = 10;
+	private static final int TIMER_WHEEL_SIZE = 1024;
+
+	// select() timeout when no timer is scheduled
+	private static final long SELECT_TIMEOUT = 500;
+
+	/**
+	 * CONNECT requests which execution time has not yet come. Accessed only
+	 * from this SelectorThread.
+	 */
+	private final TimerWheel<ChangeRequest> connectTimers = new TimerWheel<ChangeRequest>(TIMER_WHEEL_SIZE, TIMER_TICK,
+			System.currentTimeMillis());
+	private final ArrayList<ChangeRequest> expiredConnects = new ArrayList<ChangeRequest>();
+
+	/**
+	 * true when Selector.wakeup() has already been called since the last
+	 * drain of pendingChanges, so further producers can skip the syscall
+	 */
+	private final AtomicBoolean wakenUp = new AtomicBoolean(false);
+
 	/**
 	 * @param selector
 	 * @param management
+	 * @param index
 	 */
-	protected SelectorThread(Selector selector, ManagementImpl management) {
+	protected SelectorThread(Selector selector, ManagementImpl management, int index) {
 		super();
 		this.selector = selector;
 		this.management = management;
+		this.index = index;
+	}
+
+	/**
+	 * @return the index of this selector shard
+	 */
+	protected int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the selector
+	 */
+	protected Selector getSelector() {
+		return selector;
+	}
+
+	/**
+	 * Queues a change to be applied by this SelectorThread. The Selector is
+	 * not woken up, callers that need the change to be applied immediately
+	 * must call {@link #wakeup()}
+	 * 
+	 * @param change
+	 */
+	protected void addChangeRequest(ChangeRequest change) {
+		this.pendingChanges.offer(change);
+	}
+
+	/**
+	 * Wakes up the Selector so queued changes are applied. Several calls
+	 * between two drains of pending changes result in one Selector.wakeup()
+	 */
+	protected void wakeup() {
+		if (this.wakenUp.compareAndSet(false, true)) {
+			this.selector.wakeup();
+		}
 	}
 
 	/**
@@ -89,48 +158,60 @@ public class SelectorThread implements Runnable {
 	@Override
 	public void run() {
 		if (logger.isInfoEnabled()) {
-			logger.info(String.format("SelectorThread for Management=%s started.", this.management.getName()));
+			logger.info(String.format("SelectorThread=%d for Management=%s started.", this.index, this.management.getName()));
 		}
 		while (this.started) {
 			try {
-				FastList<ChangeRequest> pendingChanges = this.management.getPendingChanges();
+				// Reset before draining: a change queued after this point
+				// either gets drained below or wakes up the select() below
+				this.wakenUp.set(false);
 
 				// Process any pending changes
-				synchronized (pendingChanges) {
-					Iterator<ChangeRequest> changes = pendingChanges.iterator();
-					while (changes.hasNext()) {
-						ChangeRequest change = changes.next();
-						switch (change.getType()) {
-						case ChangeRequest.CHANGEOPS:
-							pendingChanges.remove(change);
-							SelectionKey key = change.getSocketChannel().keyFor(this.selector);
-							key.interestOps(change.getOps());
-							break;
-						case ChangeRequest.REGISTER:
-							pendingChanges.remove(change);
-							SelectionKey key1 = change.getSocketChannel().register(this.selector, change.getOps());
-							key1.attach(change.getAssociation());
-							break;
-						case ChangeRequest.CONNECT:
-							if (!change.getAssociation().isStarted()) {
-								// if Association is stopped - remove pending connection requests  
-								pendingChanges.remove(change);
-							} else {
-								if (change.getExecutionTime() <= System.currentTimeMillis()) {
-									pendingChanges.remove(change);
-									change.getAssociation().initiateConnection();
-								}
-							}
-							break;
-						case ChangeRequest.CLOSE:
-							pendingChanges.remove(change);
-							change.getAssociation().close();
+				ChangeRequest change;
+				while ((change = this.pendingChanges.poll()) != null) {
+					switch (change.getType()) {
+					case ChangeRequest.CHANGEOPS:
+						SelectionKey key = change.getSocketChannel().keyFor(this.selector);
+						key.interestOps(change.getOps());
+						break;
+					case ChangeRequest.REGISTER:
+						SelectionKey key1 = change.getSocketChannel().register(this.selector, change.getOps());
+						key1.attach(change.getAssociation());
+						break;
+					case ChangeRequest.CONNECT:
+						this.connectTimers.schedule(change, change.getExecutionTime());
+						break;
+					case ChangeRequest.CLOSE:
+						change.getAssociation().close();
+						break;
+					case ChangeRequest.ACCEPT:
+						this.doRegisterAccepted(change.getSocketChannel(), change.getAssociation());
+						break;
+					}
+				}// end of while
+
+				// Process connection requests which time has come
+				if (!this.connectTimers.isEmpty()) {
+					this.connectTimers.expire(System.currentTimeMillis(), this.expiredConnects);
+					for (int i = 0; i < this.expiredConnects.size(); i++) {
+						// if Association is stopped the request is dropped
+						// there
+						ChangeRequest expired = this.expiredConnects.get(i);
+						try {
+							expired.getAssociation().connectTimerExpired(expired);
+						} catch (Exception e) {
+							logger.error(String.format("Error while initiating a connection for Association=%s", expired
+									.getAssociation().getName()), e);
+							// the timer is gone, retry after delay
+							expired.getAssociation().scheduleConnect();
 						}
-					}// end of while
+					}
+					this.expiredConnects.clear();
 				}
 
-				// Wait for an event one of the registered channels
-				this.selector.select(500);
+				// Wait for an event one of the registered channels, or the
+				// next tick of the connect timers
+				this.selector.select(this.connectTimers.isEmpty() ? SELECT_TIMEOUT : TIMER_TICK);
 
 				// System.out.println("Done selecting " +
 				// this.selector.selectedKeys().size());
@@ -151,10 +232,15 @@ public class SelectorThread implements Runnable {
 						this.finishConnection(key);
 					} else if (key.isAcceptable()) {
 						this.accept(key);
-					} else if (key.isReadable()) {
-						this.read(key);
-					} else if (key.isWritable()) {
-						this.write(key);
+					} else {
+						if (key.isReadable()) {
+							this.read(key);
+						}
+						// OP_READ and OP_WRITE are both set while txQueue has
+						// data, serve both readiness events in one pass
+						if (key.isValid() && key.isWritable()) {
+							this.write(key);
+						}
 					}
 				}
 
@@ -166,11 +252,11 @@ public class SelectorThread implements Runnable {
 		try {
 			this.selector.close();
 		} catch (IOException e) {
-			logger.error(String.format("Error while closing Selector for SCTP Management=%s", this.management.getName()));
+			logger.error(String.format("Error while closing Selector=%d for SCTP Management=%s", this.index, this.management.getName()));
 		}
 
 		if (logger.isInfoEnabled()) {
-			logger.info(String.format("SelectorThread for Management=%s stopped.", this.management.getName()));
+			logger.info(String.format("SelectorThread=%d for Management=%s stopped.", this.index, this.management.getName()));
 		}
 	}
 
@@ -232,52 +318,33 @@ public class SelectorThread implements Runnable {
 						firstPort = port;
 					}
 
-					// Iterate through all corresponding associate to
-					// check if incoming connection request matches with any provisioned
-					// ip:port
-					FastMap<String, Association> associations = this.management.associations;
-
-					for (FastMap.Entry<String, Association> n = associations.head(), end = associations.tail(); (n = n.getNext()) != end && !provisioned;) {
-						AssociationImpl association = (AssociationImpl)n.getValue();
-						
-						// check if an association binds to the found server
-						if (srv.getName().equals(association.getServerName())) {
-
-							// compare port and ip of remote with provisioned
-							if ((port == association.getPeerPort()) && (inetAddress.getHostAddress().equals(association.getPeerAddress()))) {
-								provisioned = true;
-
-								if (!association.isStarted()) {
-									logger.error(String.format("Received connect request for Association=%s but not started yet. Droping the connection! ",
-											association.getName()));
-									socketChannel.close();
-									break;
-								}
-
-								((AssociationImpl) association).setSocketChannel(socketChannel);
-
-								// Accept the connection and make it non-blocking
-								socketChannel.configureBlocking(false);
-
-								// Register the new SocketChannel with our Selector,
-								// indicating we'd like to be notified when there's data
-								// waiting to be read
-								SelectionKey key1 = socketChannel.register(this.selector, SelectionKey.OP_READ);
-								key1.attach(association);
-
-								if (logger.isInfoEnabled()) {
-									logger.info(String.format("Connected %s", association));
-								}
-
-								if (association.getIpChannelType() == IpChannelType.TCP) {
-									AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
-									AssociationChangeNotification2 acn = new AssociationChangeNotification2(ace);
-									association.associationHandler.handleNotification(acn, association);
-								}
-
-								break;
-							}
+					// Look up the Association provisioned for this server and
+					// remote ip:port
+					AssociationImpl association = this.management.peerAssociationIndex.find(srv.getName(),
+							inetAddress.getHostAddress(), port);
+					if (association != null) {
+						provisioned = true;
+
+						if (!association.isStarted()) {
+							logger.error(String.format("Received connect request for Association=%s but not started yet. Droping the connection! ",
+									association.getName()));
+							socketChannel.close();
+							break;
+						}
+
+						association.setSocketChannel(socketChannel);
+
+						// Accept the connection and make it non-blocking
+						socketChannel.configureBlocking(false);
+
+						if (logger.isInfoEnabled()) {
+							logger.info(String.format("Connected %s", association));
 						}
+
+						// Register the new SocketChannel with the Selector
+						// owning this Association, indicating we'd like to be
+						// notified when there's data waiting to be read
+						this.registerAccepted(socketChannel, association);
 					}
 
 					if (provisioned)
@@ -329,21 +396,14 @@ public class SelectorThread implements Runnable {
 						return;
 					}
 
-					// Register the new SocketChannel with our Selector,
-					// indicating we'd like to be notified when there's data
-					// waiting to be read
-					SelectionKey key1 = socketChannel.register(this.selector, SelectionKey.OP_READ);
-					key1.attach(anonymAssociation);
-
 					if (logger.isInfoEnabled()) {
 						logger.info(String.format("Accepted anonymous %s", anonymAssociation));
 					}
 
-					if (anonymAssociation.getIpChannelType() == IpChannelType.TCP) {
-						AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
-						AssociationChangeNotification2 acn = new AssociationChangeNotification2(ace);
-						anonymAssociation.associationHandler.handleNotification(acn, anonymAssociation);
-					}
+					// Register the new SocketChannel with the Selector owning
+					// this Association, indicating we'd like to be notified
+					// when there's data waiting to be read
+					this.registerAccepted(socketChannel, anonymAssociation);
 				}
 			}
 
@@ -360,6 +420,37 @@ public class SelectorThread implements Runnable {
 		}
 	}
 
+	/**
+	 * Registers an accepted channel for OP_READ. If the Association belongs to
+	 * another selector shard the registration is handed over to that shard's
+	 * SelectorThread, otherwise the channel is registered here directly.
+	 */
+	private void registerAccepted(AbstractSelectableChannel socketChannel, AssociationImpl association) throws ClosedChannelException {
+		SelectorThread owner = this.management.getSelectorThread(association);
+		if (owner == this) {
+			this.doRegisterAccepted(socketChannel, association);
+		} else {
+			owner.addChangeRequest(new ChangeRequest(socketChannel, association, ChangeRequest.ACCEPT, SelectionKey.OP_READ));
+			owner.wakeup();
+		}
+	}
+
+	/**
+	 * Registers an accepted channel with this Selector and for TCP fires
+	 * COMM_UP. Both run on the SelectorThread owning the Association, so the
+	 * Association is up before its first read is dispatched.
+	 */
+	private void doRegisterAccepted(AbstractSelectableChannel socketChannel, AssociationImpl association) throws ClosedChannelException {
+		SelectionKey key1 = socketChannel.register(this.selector, SelectionKey.OP_READ);
+		key1.attach(association);
+
+		if (association.getIpChannelType() == IpChannelType.TCP) {
+			AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
+			AssociationChangeNotification2 acn = new AssociationChangeNotification2(ace);
+			association.associationHandler.handleNotification(acn, association);
+		}
+	}
+
 	private void finishConnection(SelectionKey key) throws IOException{
 		AssociationImpl association = (AssociationImpl) key.attachment();
 		if (association.getIpChannelType() == IpChannelType.SCTP)
@@ -368,29 +459,30 @@ public class SelectorThread implements Runnable {
 			this.finishConnectionTcp(key);
 	}
 
+	/**
+	 * Completes a connection when OP_CONNECT is ready. If the handshake is not
+	 * done yet OP_CONNECT stays set and this is called again on the next
+	 * event, so a slow peer never holds up this SelectorThread.
+	 */
 	private void finishConnectionSctp(SelectionKey key) throws IOException {
 
 		AssociationImpl association = (AssociationImpl) key.attachment();
 		try {
 			SctpChannel socketChannel = (SctpChannel) key.channel();
 
-			if (socketChannel.isConnectionPending()) {
-
-				// TODO Loop? Or may be sleep for while?
-				while (socketChannel.isConnectionPending()) {
-					socketChannel.finishConnect();
-				}
+			if (!socketChannel.finishConnect()) {
+				return;
 			}
 
 			if (logger.isInfoEnabled()) {
 				logger.info(String.format("Association=%s connected to=%s", association.getName(), socketChannel.getRemoteAddresses()));
 			}
 
-			// Register an interest in writing on this channel
+			// Register an interest in reading on this channel
 			key.interestOps(SelectionKey.OP_READ);
 		} catch (Exception e) {
 			logger.error(String.format("Exception while finishing connection for Association=%s", association.getName()), e);
-			association.scheduleConnect();
+			this.abortConnection(key, association);
 		}
 	}
 
@@ -400,19 +492,16 @@ public class SelectorThread implements Runnable {
 
 		try {
 			SocketChannel socketChannel = (SocketChannel) key.channel();
-			if (socketChannel.isConnectionPending()) {
 
-				// TODO Loop? Or may be sleep for while?
-				while (socketChannel.isConnectionPending()) {
-					socketChannel.finishConnect();
-				}
+			if (!socketChannel.finishConnect()) {
+				return;
 			}
 
 			if (logger.isInfoEnabled()) {
 				logger.info(String.format("Association=%s connected to=%s", association.getName(), socketChannel.getRemoteAddress()));
 			}
 
-			// Register an interest in writing on this channel
+			// Register an interest in reading on this channel
 			key.interestOps(SelectionKey.OP_READ);
 
 			AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
@@ -421,9 +510,21 @@ public class SelectorThread implements Runnable {
 
 		} catch (Exception e) {
 			logger.error(String.format("Exception while finishing connection for Association=%s", association.getName()), e);
+			this.abortConnection(key, association);
+		}
+	}
 
-			association.scheduleConnect();
+	/**
+	 * Drops a failed connection attempt and schedules the next one
+	 */
+	private void abortConnection(SelectionKey key, AssociationImpl association) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			logger.error(String.format("Exception while closing the failed connection of Association=%s", association.getName()), e);
 		}
+		association.scheduleConnect();
 	}
 
 	private void read(SelectionKey key) throws IOException {
@@ -0,0 +1,77 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * MessageFramer for the common message header of the SIGTRAN adaptation
+ * layers, M3UA (RFC 4666) and SUA (RFC 3868) among them:
+ * 
+ * <pre>
+ * Version (1) | Reserved (1) | Message Class (1) | Message Type (1)
+ * Message Length (4), including the header
+ * </pre>
+ */
+public class SigtranMessageFramer implements MessageFramer {
+
+	public static final int HEADER_LENGTH = 8;
+	public static final int VERSION = 1;
+	public static final int DEFAULT_MAX_MESSAGE_LENGTH = 65536;
+
+	private final int maxMessageLength;
+
+	public SigtranMessageFramer() {
+		this(DEFAULT_MAX_MESSAGE_LENGTH);
+	}
+
+	/**
+	 * @param maxMessageLength
+	 *            longer messages are treated as a corrupted stream
+	 */
+	public SigtranMessageFramer(int maxMessageLength) {
+		this.maxMessageLength = maxMessageLength;
+	}
+
+	public int getMaxMessageLength() {
+		return maxMessageLength;
+	}
+
+	@Override
+	public int getMessageLength(ByteBuf buf) throws Exception {
+		if (buf.readableBytes() < HEADER_LENGTH)
+			return -1;
+
+		int index = buf.readerIndex();
+		int version = buf.getUnsignedByte(index);
+		if (version != VERSION)
+			throw new Exception(String.format("Unsupported SIGTRAN message version=%d", version));
+
+		long length = buf.getUnsignedInt(index + 4);
+		if (length < HEADER_LENGTH || length > this.maxMessageLength)
+			throw new Exception(String.format("Invalid SIGTRAN message length=%d, max=%d", length, this.maxMessageLength));
+
+		return (int) length;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.List;
+
+/**
+ * Hashed timer wheel. Tasks are hashed by their deadline tick into a ring of
+ * buckets, so scheduling is O(1) and each tick only looks at one bucket
+ * whatever the count of scheduled tasks is. A task expires at the first
+ * {@link #expire(long, List)} at or after its deadline, with the resolution
+ * of one tick.
+ * 
+ * Not thread safe, an instance is used by one thread only.
+ */
+public class TimerWheel<T> {
+
+	private final long tickDuration;
+	private final int mask;
+	private final Node<T>[] buckets;
+	private final long startTime;
+
+	// next tick to process
+	private long tick = 0;
+	private int size = 0;
+
+	/**
+	 * @param wheelSize
+	 *            count of buckets, rounded up to a power of two
+	 * @param tickDuration
+	 *            tick length in milliseconds
+	 * @param now
+	 *            current time in milliseconds
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public TimerWheel(int wheelSize, long tickDuration, long now) {
+		int capacity = 1;
+		while (capacity < wheelSize)
+			capacity <<= 1;
+
+		this.tickDuration = tickDuration;
+		this.mask = capacity - 1;
+		this.buckets = new Node[capacity];
+		this.startTime = now;
+	}
+
+	public long getTickDuration() {
+		return tickDuration;
+	}
+
+	/**
+	 * @return the count of scheduled tasks
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Schedules a task. A deadline in the past expires at the next tick.
+	 * 
+	 * @param task
+	 * @param deadline
+	 *            time in milliseconds
+	 */
+	public void schedule(T task, long deadline) {
+		long deadlineTick = (deadline - this.startTime + this.tickDuration - 1) / this.tickDuration;
+		if (deadlineTick < this.tick)
+			deadlineTick = this.tick;
+
+		int index = (int) deadlineTick & this.mask;
+		this.buckets[index] = new Node<T>(task, deadlineTick, this.buckets[index]);
+		this.size++;
+	}
+
+	/**
+	 * Removes the tasks which deadline has come
+	 * 
+	 * @param now
+	 *            current time in milliseconds
+	 * @param expired
+	 *            the expired tasks are added to it
+	 * @return the count of expired tasks
+	 */
+	public int expire(long now, List<T> expired) {
+		long currentTick = (now - this.startTime) / this.tickDuration;
+		if (currentTick < this.tick)
+			return 0;
+
+		int count = 0;
+		if (this.size > 0) {
+			// after a pause longer than a lap every bucket is looked at once
+			long lastTick = Math.min(currentTick, this.tick + this.mask);
+			for (long t = this.tick; t <= lastTick; t++) {
+				count += this.expireBucket((int) t & this.mask, currentTick, expired);
+			}
+		}
+		this.tick = currentTick + 1;
+		return count;
+	}
+
+	/**
+	 * Removes every task
+	 */
+	public void clear() {
+		for (int i = 0; i < this.buckets.length; i++) {
+			this.buckets[i] = null;
+		}
+		this.size = 0;
+	}
+
+	private int expireBucket(int index, long currentTick, List<T> expired) {
+		int count = 0;
+		Node<T> prev = null;
+		Node<T> node = this.buckets[index];
+		while (node != null) {
+			Node<T> next = node.next;
+			if (node.deadlineTick <= currentTick) {
+				if (prev == null)
+					this.buckets[index] = next;
+				else
+					prev.next = next;
+				expired.add(node.task);
+				count++;
+			} else {
+				prev = node;
+			}
+			node = next;
+		}
+		this.size -= count;
+		return count;
+	}
+
+	private static final class Node<T> {
+		private final T task;
+		private final long deadlineTick;
+		private Node<T> next;
+
+		private Node(T task, long deadlineTick, Node<T> next) {
+			this.task = task;
+			this.deadlineTick = deadlineTick;
+			this.next = next;
+		}
+	}
+}
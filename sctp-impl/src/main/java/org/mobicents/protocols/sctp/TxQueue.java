@@ -0,0 +1,231 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.mobicents.protocols.api.PayloadData;
+
+/**
+ * Bounded array based transmit queue of an Association. Many threads may
+ * offer, only one thread at a time (the one writing to the channel) polls.
+ * Besides the message count limit the queue keeps a limit on the total
+ * payload bytes and remembers the enqueue time of each message so the
+ * queueing delay can be measured. The message fields are kept in arrays,
+ * so queueing does not need a PayloadData per message.
+ * 
+ * The ring is the bounded queue of D. Vyukov: each slot carries a sequence
+ * which tells producers whether the slot is free and the consumer whether it
+ * is published.
+ */
+public class TxQueue {
+
+	private final int maxMessages;
+	private final long maxBytes;
+
+	private final int mask;
+	private final ByteBuf[] byteBufs;
+	private final int[] streamNumbers;
+	private final int[] payloadProtocolIds;
+	private final boolean[] completes;
+	private final boolean[] unordereds;
+	private final long[] enqueueTimes;
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head = 0;
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private long lastPolledEnqueueTime;
+	private int lastPolledStreamNumber;
+	private int lastPolledPayloadProtocolId;
+	private boolean lastPolledComplete;
+	private boolean lastPolledUnordered;
+
+	/**
+	 * @param maxMessages
+	 *            max count of queued messages
+	 * @param maxBytes
+	 *            max count of queued payload bytes
+	 */
+	public TxQueue(int maxMessages, long maxBytes) {
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+
+		int capacity = 1;
+		while (capacity < maxMessages)
+			capacity <<= 1;
+
+		this.mask = capacity - 1;
+		this.byteBufs = new ByteBuf[capacity];
+		this.streamNumbers = new int[capacity];
+		this.payloadProtocolIds = new int[capacity];
+		this.completes = new boolean[capacity];
+		this.unordereds = new boolean[capacity];
+		this.enqueueTimes = new long[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds a message to the tail of the queue
+	 * 
+	 * @param payloadData
+	 * @return false if the queue is full in messages or in bytes
+	 */
+	public boolean offer(PayloadData payloadData) {
+		return this.offer(payloadData.getByteBuf(), payloadData.getStreamNumber(), payloadData.getPayloadProtocolId(),
+				payloadData.isComplete(), payloadData.isUnordered());
+	}
+
+	/**
+	 * Adds a message to the tail of the queue
+	 * 
+	 * @return false if the queue is full in messages or in bytes
+	 */
+	public boolean offer(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean complete, boolean unordered) {
+		int len = byteBuf.readableBytes();
+		long total = this.bytes.addAndGet(len);
+		// a single message bigger than maxBytes is accepted into empty queue
+		if (total > this.maxBytes && total != len) {
+			this.bytes.addAndGet(-len);
+			return false;
+		}
+
+		long pos = this.tail.get();
+		while (true) {
+			if (pos - this.head >= this.maxMessages) {
+				this.bytes.addAndGet(-len);
+				return false;
+			}
+
+			int index = (int) pos & this.mask;
+			long dif = this.sequences.get(index) - pos;
+			if (dif == 0) {
+				if (this.tail.compareAndSet(pos, pos + 1)) {
+					this.byteBufs[index] = byteBuf;
+					this.streamNumbers[index] = streamNumber;
+					this.payloadProtocolIds[index] = payloadProtocolId;
+					this.completes[index] = complete;
+					this.unordereds[index] = unordered;
+					this.enqueueTimes[index] = System.nanoTime();
+					// publishes the slot to the consumer
+					this.sequences.lazySet(index, pos + 1);
+					return true;
+				}
+			} else if (dif < 0) {
+				// the consumer has not yet freed this slot
+				this.bytes.addAndGet(-len);
+				return false;
+			}
+			pos = this.tail.get();
+		}
+	}
+
+	/**
+	 * Takes the message at the head of the queue. Must be called by one
+	 * thread at a time. The other fields of the message are available by the
+	 * getLastPolled methods until the next poll.
+	 * 
+	 * @return the payload of the message or null if the queue is empty
+	 */
+	public ByteBuf poll() {
+		long pos = this.head;
+		int index = (int) pos & this.mask;
+		if (this.sequences.get(index) != pos + 1)
+			return null;
+
+		ByteBuf byteBuf = this.byteBufs[index];
+		this.lastPolledEnqueueTime = this.enqueueTimes[index];
+		this.lastPolledStreamNumber = this.streamNumbers[index];
+		this.lastPolledPayloadProtocolId = this.payloadProtocolIds[index];
+		this.lastPolledComplete = this.completes[index];
+		this.lastPolledUnordered = this.unordereds[index];
+		this.byteBufs[index] = null;
+		this.head = pos + 1;
+		// frees the slot for the producers of the next lap
+		this.sequences.lazySet(index, pos + this.mask + 1);
+
+		this.bytes.addAndGet(-byteBuf.readableBytes());
+		return byteBuf;
+	}
+
+	/**
+	 * @return the System.nanoTime() when the message last returned by poll()
+	 *         was offered. Only valid in the polling thread.
+	 */
+	public long getLastPolledEnqueueTime() {
+		return lastPolledEnqueueTime;
+	}
+
+	public int getLastPolledStreamNumber() {
+		return lastPolledStreamNumber;
+	}
+
+	public int getLastPolledPayloadProtocolId() {
+		return lastPolledPayloadProtocolId;
+	}
+
+	public boolean isLastPolledComplete() {
+		return lastPolledComplete;
+	}
+
+	public boolean isLastPolledUnordered() {
+		return lastPolledUnordered;
+	}
+
+	/**
+	 * @return true if there are no published messages
+	 */
+	public boolean isEmpty() {
+		return this.tail.get() == this.head;
+	}
+
+	/**
+	 * @return the count of queued messages
+	 */
+	public int size() {
+		return (int) (this.tail.get() - this.head);
+	}
+
+	/**
+	 * @return the count of queued payload bytes
+	 */
+	public long getBytes() {
+		return this.bytes.get();
+	}
+
+	public int getMaxMessages() {
+		return maxMessages;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+/**
+ * Chooses the DispatchLane of each stream of an Association when the
+ * Association comes up and the stack is not in single thread mode. All
+ * messages of a stream are delivered by the chosen lane until the
+ * Association goes down or the stream is moved by the WorkerRebalancer.
+ */
+public interface WorkerMappingPolicy {
+
+	/**
+	 * @param association
+	 *            the Association coming up
+	 * @param streamNumber
+	 * @param lanes
+	 *            the running DispatchLanes
+	 * @return the index in lanes of the DispatchLane for the stream
+	 */
+	int selectLane(AssociationImpl association, int streamNumber, DispatchLane[] lanes);
+}
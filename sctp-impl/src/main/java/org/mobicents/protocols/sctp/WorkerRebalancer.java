@@ -0,0 +1,173 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javolution.util.FastMap;
+
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.Association;
+
+/**
+ * Periodically looks for overloaded DispatchLanes, i.e. lanes with a queue
+ * much deeper than the average. For each of them a stream with traffic since
+ * the previous pass and the fewest undelivered messages, ideally a quiescent
+ * one, is asked to move to the least loaded lane. The move
+ * itself is done by the SelectorThread of the Association once that stream
+ * has nothing in flight, see AssociationImpl.getDispatchLane(), so the order
+ * of the stream is never broken.
+ * 
+ * Only streams of provisioned Associations are moved.
+ */
+public class WorkerRebalancer implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(WorkerRebalancer.class);
+
+	// A lane is overloaded when its queue is this much deeper than the
+	// average and at least MIN_QUEUE_DEPTH deep
+	protected static final double OVERLOAD_FACTOR = 2.0;
+	protected static final int MIN_QUEUE_DEPTH = 64;
+
+	private final ManagementImpl management;
+	private final int interval;
+
+	private volatile boolean started = false;
+	private Thread thread;
+
+	/**
+	 * @param management
+	 * @param interval
+	 *            milliseconds between two rebalancing passes
+	 */
+	public WorkerRebalancer(ManagementImpl management, int interval) {
+		this.management = management;
+		this.interval = interval;
+	}
+
+	public void start() {
+		this.started = true;
+		this.thread = new Thread(this, String.format("WorkerRebalancer-%s", this.management.getName()));
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public void stop() {
+		this.started = false;
+		Thread t = this.thread;
+		if (t != null)
+			t.interrupt();
+	}
+
+	@Override
+	public void run() {
+		while (this.started) {
+			try {
+				Thread.sleep(this.interval);
+			} catch (InterruptedException e) {
+				continue;
+			}
+
+			try {
+				this.rebalance();
+			} catch (Exception e) {
+				logger.error(String.format("Error while rebalancing DispatchLanes of Management=%s", this.management.getName()), e);
+			}
+		}
+	}
+
+	/**
+	 * One rebalancing pass
+	 * 
+	 * @return count of requested stream moves
+	 */
+	protected int rebalance() {
+		DispatchLane[] lanes = this.management.getDispatchLanes();
+		if (lanes == null || lanes.length < 2)
+			return 0;
+
+		int[] depths = new int[lanes.length];
+		long total = 0;
+		int target = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			depths[i] = lanes[i].size();
+			total += depths[i];
+			if (depths[i] < depths[target])
+				target = i;
+		}
+
+		double limit = Math.max(MIN_QUEUE_DEPTH, OVERLOAD_FACTOR * total / lanes.length);
+		boolean[] overloaded = new boolean[lanes.length];
+		for (int i = 0; i < lanes.length; i++) {
+			overloaded[i] = i != target && depths[i] >= limit;
+		}
+
+		// for each overloaded lane the stream to move: the one with the
+		// fewest messages in flight, so the move is done soon, and among
+		// them the one with the most recent traffic
+		AssociationImpl[] moveAssociations = new AssociationImpl[lanes.length];
+		int[] moveStreams = new int[lanes.length];
+		int[] moveInFlight = new int[lanes.length];
+		int[] moveTraffic = new int[lanes.length];
+
+		FastMap<String, Association> associations = this.management.associations;
+		for (FastMap.Entry<String, Association> n = associations.head(), end = associations.tail(); (n = n.getNext()) != end;) {
+			AssociationImpl association = (AssociationImpl) n.getValue();
+			AtomicIntegerArray table = association.getWorkerThreadTable();
+			if (table == null)
+				continue;
+
+			for (int stream = 0; stream < table.length(); stream++) {
+				// always taken, so the traffic counts only the last interval
+				int traffic = association.takeStreamTraffic(stream);
+				int lane = table.get(stream);
+				if (traffic == 0 || lane >= lanes.length || !overloaded[lane] || !association.isUp())
+					continue;
+
+				int inFlight = association.getStreamInFlight(stream);
+				if (moveAssociations[lane] == null || inFlight < moveInFlight[lane]
+						|| (inFlight == moveInFlight[lane] && traffic > moveTraffic[lane])) {
+					moveAssociations[lane] = association;
+					moveStreams[lane] = stream;
+					moveInFlight[lane] = inFlight;
+					moveTraffic[lane] = traffic;
+				}
+			}
+		}
+
+		int moves = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			if (moveAssociations[i] == null)
+				continue;
+
+			moveAssociations[i].requestStreamMove(moveStreams[i], target);
+			moves++;
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("DispatchLane=%s queue=%d is overloaded, moving a stream to DispatchLane=%s queue=%d",
+						lanes[i].getName(), depths[i], lanes[target].getName(), depths[target]));
+			}
+		}
+		return moves;
+	}
+}
@@ -25,19 +25,24 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
 import io.netty.channel.sctp.SctpChannel;
 import io.netty.channel.sctp.SctpChannelOption;
 import io.netty.channel.sctp.SctpMessage;
 import io.netty.channel.sctp.nio.NioSctpChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javolution.xml.XMLFormat;
 import javolution.xml.stream.XMLStreamException;
@@ -46,10 +51,12 @@ import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.AssociationListener;
 import org.mobicents.protocols.api.AssociationType;
+import org.mobicents.protocols.api.AssociationWritabilityListener;
 import org.mobicents.protocols.api.CongestionListener;
 import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.ManagementEventListener;
 import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.sctp.ReconnectPolicy;
 
 /**
  * @author <a href="mailto:amit.bhayani@telestax.com">Amit Bhayani</a>
@@ -72,6 +79,9 @@ public class NettyAssociationImpl implements Association {
     private static final String EXTRA_HOST_ADDRESS = "extraHostAddress";
     private static final String EXTRA_HOST_ADDRESS_SIZE = "extraHostAddresseSize";
 
+    // Wait for a free connection slot of Management, randomized by +-50%
+    private static final int CONNECT_SLOT_WAIT = 100;
+
     private String hostAddress;
     private int hostPort;
     private String peerAddress;
@@ -94,7 +104,26 @@ public class NettyAssociationImpl implements Association {
     protected volatile boolean up = false;
 
     private NettySctpChannelInboundHandlerAdapter channelHandler;
-    protected int congLevel;
+    protected volatile int congLevel;
+    // the writability last notified to an AssociationWritabilityListener
+    private final AtomicBoolean writable = new AtomicBoolean(true);
+
+    // count of received messages waiting for the worker executors
+    private final AtomicInteger workerQueueSize = new AtomicInteger();
+
+    // Delay before connection attempts of a CLIENT Association, null to use the ReconnectPolicy of Management
+    private volatile ReconnectPolicy reconnectPolicy = null;
+    private volatile int reconnectAttempts = 0;
+    private volatile long nextReconnectTime = 0;
+    // true while this Association holds a connection slot of Management
+    private final AtomicBoolean connectInProgress = new AtomicBoolean();
+    // true while a connection attempt is scheduled and has not run yet
+    private final AtomicBoolean connectScheduled = new AtomicBoolean();
+
+    // Addresses resolved before the first connection attempt
+    private volatile InetSocketAddress localSocketAddress;
+    private volatile InetSocketAddress remoteSocketAddress;
+    private volatile InetAddress[] extraHostInetAddresses;
 
     public NettyAssociationImpl() {
         super();
@@ -330,13 +359,111 @@ public class NettyAssociationImpl implements Association {
 
         NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen();
 
-        final ByteBuf byteBuf = payloadData.getByteBuf();
+        this.doSend(handler, payloadData);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Association#send(io.netty.buffer.ByteBuf, int, int, boolean)
+     */
+    @Override
+    public void send(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean unordered) throws Exception {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Tx : Ass=%s %s", this.getName(), new PayloadData(byteBuf.readableBytes(), byteBuf,
+                    true, unordered, payloadProtocolId, streamNumber)));
+        }
+
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen();
+
+        handler.writeAndFlush(this.toMessage(byteBuf, streamNumber, payloadProtocolId, unordered));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Association#offer(org.mobicents.protocols.api.PayloadData)
+     */
+    @Override
+    public boolean offer(PayloadData payloadData) {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        // over the high water mark the message is not taken, like when the transmit queue of the NIO stack is full
+        if (!this.started || handler == null || !handler.channel.isWritable())
+            return false;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData));
+        }
+
+        this.doSend(handler, payloadData);
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Association#send(java.util.Collection)
+     */
+    @Override
+    public void send(Collection<PayloadData> payloadDatas) throws Exception {
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen();
+
+        for (PayloadData payloadData : payloadDatas) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData));
+            }
+
+            handler.write(this.toMessage(payloadData));
+        }
+        handler.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Association#write(org.mobicents.protocols.api.PayloadData)
+     */
+    @Override
+    public void write(PayloadData payloadData) throws Exception {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData));
+        }
+
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen();
+
+        handler.write(this.toMessage(payloadData));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Association#flush()
+     */
+    @Override
+    public void flush() {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (handler != null)
+            handler.flush();
+    }
+
+    private void doSend(NettySctpChannelInboundHandlerAdapter handler, PayloadData payloadData) {
+        handler.writeAndFlush(this.toMessage(payloadData));
+    }
+
+    private Object toMessage(PayloadData payloadData) {
+        return this.toMessage(payloadData.getByteBuf(), payloadData.getStreamNumber(), payloadData.getPayloadProtocolId(),
+                payloadData.isUnordered());
+    }
+
+    /**
+     * @return the message written to the channel: the ByteBuf itself for TCP. For SCTP an SctpMessage, which can not
+     *         be reused as the channel takes it over
+     */
+    private Object toMessage(ByteBuf byteBuf, int streamNumber, int payloadProtocolId, boolean unordered) {
         if (this.ipChannelType == IpChannelType.SCTP) {
-            SctpMessage sctpMessage = new SctpMessage(payloadData.getPayloadProtocolId(), payloadData.getStreamNumber(),
-                    payloadData.isUnordered(), byteBuf);
-            handler.writeAndFlush(sctpMessage);
+            return new SctpMessage(payloadProtocolId, streamNumber, unordered, byteBuf);
         } else {
-            handler.writeAndFlush(byteBuf);
+            return byteBuf;
         }
     }
 
@@ -361,21 +488,79 @@ public class NettyAssociationImpl implements Association {
         return this.congLevel;
     }
 
+    @Override
+    public boolean isWritable() {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        return handler == null || handler.channel.isWritable();
+    }
+
+    @Override
+    public int getReconnectAttempts() {
+        return this.reconnectAttempts;
+    }
+
+    @Override
+    public long getNextReconnectTime() {
+        return this.nextReconnectTime;
+    }
+
+    /**
+     * @return the ReconnectPolicy of this Association, null if the one of Management is used
+     */
+    public ReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * @param reconnectPolicy the ReconnectPolicy of this Association, null to use the one of Management
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
     protected void setCongestionLevel(int val) {
-        if (this.congLevel != val) {
-            logger.warn("Outgoing congestion control: SCTP: Changing of congestion level for Association=" + this.name + " "
-                    + this.congLevel + "->" + val);
-        }
+        if (this.congLevel == val)
+            return;
+
+        logger.warn("Outgoing congestion control: SCTP: Changing of congestion level for Association=" + this.name + " "
+                + this.congLevel + "->" + val);
+
+        int oldLevel = this.congLevel;
+        this.congLevel = val;
 
         for (CongestionListener lstr : this.management.getCongestionListeners()) {
             try {
-                lstr.onCongLevelChanged(this, this.congLevel, val);
+                lstr.onCongLevelChanged(this, oldLevel, val);
             } catch (Throwable ee) {
-                logger.error("Exception while invoking onAssociationAdded", ee);
+                logger.error("Exception while invoking onCongLevelChanged", ee);
             }
         }
+    }
 
-        this.congLevel = val;
+    /**
+     * A closed channel is reported as down, not as writable again
+     */
+    protected void resetWritability() {
+        this.writable.set(true);
+    }
+
+    /**
+     * Notifies the listener if the writability differs from the last one
+     * notified. The channel events come later than the changes, so the same
+     * state may be reported more than once
+     */
+    protected void writabilityChanged(boolean writable) {
+        if (!this.writable.compareAndSet(!writable, writable))
+            return;
+
+        AssociationListener listener = this.associationListener;
+        if (listener instanceof AssociationWritabilityListener) {
+            try {
+                ((AssociationWritabilityListener) listener).onWritabilityChanged(this, writable);
+            } catch (Throwable ee) {
+                logger.error("Exception while invoking onWritabilityChanged", ee);
+            }
+        }
     }
 
     /*
@@ -460,12 +645,13 @@ public class NettyAssociationImpl implements Association {
             throw new NullPointerException(String.format("AssociationListener is null for Associatoion=%s", this.name));
         }
 
+        this.started = true;
+
         if (this.type == AssociationType.CLIENT) {
+            this.reconnectAttempts = 0;
             this.scheduleConnect();
         }
 
-        this.started = true;
-
         if (logger.isInfoEnabled()) {
             if (this.type != AssociationType.ANONYMOUS_SERVER) {
                 logger.info(String.format("Started Association=%s", this));
@@ -500,7 +686,37 @@ public class NettyAssociationImpl implements Association {
         }
     }
 
-    protected void read(PayloadData payload) {
+    /**
+     * Delivers the received message to the listener: at once in single thread mode, else by the worker executor of its
+     * stream
+     */
+    protected void read(final PayloadData payload) {
+        EventExecutor executor = this.management.getWorkerExecutor(this, payload.getStreamNumber());
+        if (executor == null) {
+            this.deliver(payload);
+            return;
+        }
+
+        this.workerQueued();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        deliver(payload);
+                    } finally {
+                        workerDelivered();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the stack is stopping
+            this.workerDelivered();
+            this.deliver(payload);
+        }
+    }
+
+    private void deliver(PayloadData payload) {
         try {
             this.associationListener.onPayload(this, payload);
         } catch (Exception e) {
@@ -508,6 +724,55 @@ public class NettyAssociationImpl implements Association {
         }
     }
 
+    /**
+     * Called on the channel EventLoop. Reading is paused when the worker executors have too many messages queued
+     */
+    private void workerQueued() {
+        if (this.workerQueueSize.incrementAndGet() >= this.management.getWorkerQueueMaxMessages()) {
+            Channel channel = this.getChannel();
+            if (channel != null && channel.config().isAutoRead())
+                this.setAutoRead(channel, false);
+        }
+    }
+
+    /**
+     * Called by a worker executor. Once the queue is down to half of the maximum reading is resumed, by the channel
+     * EventLoop so pausing and resuming never race
+     */
+    private void workerDelivered() {
+        final int resumeLevel = this.management.getWorkerQueueMaxMessages() / 2;
+        if (this.workerQueueSize.decrementAndGet() != resumeLevel)
+            return;
+
+        final Channel channel = this.getChannel();
+        if (channel == null)
+            return;
+        try {
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!channel.config().isAutoRead() && workerQueueSize.get() <= resumeLevel)
+                        setAutoRead(channel, true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the stack is stopping
+        }
+    }
+
+    private Channel getChannel() {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        return handler != null ? handler.channel : null;
+    }
+
+    private void setAutoRead(Channel channel, boolean autoRead) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Association=%s %s reading for worker executors, queued messages=%d", this.name,
+                    (autoRead ? "resumes" : "pauses"), this.workerQueueSize.get()));
+        }
+        channel.config().setAutoRead(autoRead);
+    }
+
     protected void markAssociationUp(int maxInboundStreams, int maxOutboundStreams) {
         if (this.server != null) {
             synchronized (this.server.anonymAssociations) {
@@ -516,6 +781,10 @@ public class NettyAssociationImpl implements Association {
         }
 
         this.up = true;
+        this.reconnectAttempts = 0;
+        this.nextReconnectTime = 0;
+        this.connectFinished();
+
         this.getAssociationListener().onCommunicationUp(this, maxInboundStreams, maxOutboundStreams);
 
         for (ManagementEventListener lstr : this.management.getManagementEventListeners()) {
@@ -551,20 +820,58 @@ public class NettyAssociationImpl implements Association {
     }
 
     protected void scheduleConnect() {
-        int connectDelay = this.management.getConnectDelay();
+        this.connectFinished();
+
+        ReconnectPolicy policy = this.reconnectPolicy;
+        if (policy == null)
+            policy = this.management.getReconnectPolicy();
+        long connectDelay = policy.getReconnectDelay(this.reconnectAttempts, this.management.getConnectDelay());
+        if (!this.scheduleConnect(connectDelay)) {
+            // a failed attempt may be reported both by its future and by the channel handler
+            return;
+        }
+        this.reconnectAttempts++;
+
         if (logger.isDebugEnabled()) {
-            logger.debug(String.format("Scheduling of a channel connection: Association=%s, connectDelay=%d", this,
-                    connectDelay));
+            logger.debug(String.format("Scheduling of a channel connection: Association=%s, connectDelay=%d, attempt=%d", this,
+                    connectDelay, this.reconnectAttempts));
+        }
+    }
+
+    /**
+     * @return false if a connection attempt is already scheduled
+     */
+    private boolean scheduleConnect(long connectDelay) {
+        if (!this.connectScheduled.compareAndSet(false, true)) {
+            return false;
         }
+        this.nextReconnectTime = System.currentTimeMillis() + connectDelay;
 
 //        final ScheduledExecutorService loop = this.management.getBossGroup().next();
         final ScheduledExecutorService loop = this.management.getClientExecutor();
-        loop.schedule(new Runnable() {
-            @Override
-            public void run() {
-                connect();
-            }
-        }, connectDelay, TimeUnit.MILLISECONDS);
+        try {
+            loop.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    connectScheduled.set(false);
+                    connect();
+                }
+            }, connectDelay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // the executor is shut down with Management
+            this.connectScheduled.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back the connection slot of Management if this Association holds one
+     */
+    private void connectFinished() {
+        if (this.connectInProgress.compareAndSet(true, false)) {
+            this.management.releaseConnect();
+        }
     }
 
     protected void setChannelHandler(NettySctpChannelInboundHandlerAdapter channelHandler) {
@@ -577,69 +884,172 @@ public class NettyAssociationImpl implements Association {
             return;
         }
 
+        if (!this.connectInProgress.get()) {
+            if (!this.management.acquireConnect()) {
+                // too many connection attempts in progress, try again soon without counting this as an attempt
+                this.scheduleConnect(CONNECT_SLOT_WAIT / 2 + ThreadLocalRandom.current().nextInt(CONNECT_SLOT_WAIT));
+                return;
+            }
+            this.connectInProgress.set(true);
+        }
+        this.nextReconnectTime = 0;
+
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Initiating connection started: Association=%s", this));
         }
 
+        if (this.remoteSocketAddress != null) {
+            this.bindChannel();
+            return;
+        }
+
+        // The lookups may block, they are done by the resolver executor which then continues the connection attempt
+        try {
+            this.management.getResolverExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        resolveAddresses();
+                    } catch (Exception e) {
+                        logger.error(String.format("Exception while resolving addresses for Association=%s", getName()), e);
+                        scheduleConnect();
+                        return;
+                    }
+
+                    if (!started) {
+                        connectFinished();
+                        return;
+                    }
+                    bindChannel();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down with Management
+            this.connectFinished();
+        }
+    }
+
+    /**
+     * Creates the client channel and binds it to the resolved local address
+     */
+    private void bindChannel() {
         Bootstrap b;
-        InetSocketAddress localAddress;
         try {
-            EventLoopGroup group = this.management.getBossGroup();
             b = new Bootstrap();
 
-            b.group(group);
+            b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, this.management.getConnectTimeout());
+            // client channels are spread over the worker threads like the accepted ones
             if (this.ipChannelType == IpChannelType.SCTP) {
+                b.group(this.management.getWorkerGroup());
                 b.channel(NioSctpChannel.class);
 
                 // applying of stack level SCTP options
                 this.applySctpOptions(b);
+                this.management.applyWriteBufferWaterMarks(b);
 
                 b.handler(new NettySctpClientChannelInitializer(this));
             } else {
-                b.channel(NioSocketChannel.class);
+                b.group(this.management.getTcpWorkerGroup());
+                b.channel(this.management.getTcpChannelClass());
                 b.option(ChannelOption.TCP_NODELAY, true);
+                this.management.applyTcpOptions(b);
+                this.management.applyWriteBufferWaterMarks(b);
                 b.handler(new NettyTcpClientChannelInitializer(this));
             }
-
-            localAddress = new InetSocketAddress(this.hostAddress, this.hostPort);
         } catch (Exception e) {
             logger.error(String.format("Exception while creating connection for Association=%s", this.getName()), e);
             this.scheduleConnect();
             return;
         }
 
-        // Bind the client channel.
-        try {
-            ChannelFuture bindFuture = b.bind(localAddress).sync();
-            Channel channel = bindFuture.channel();
-
-            if (this.ipChannelType == IpChannelType.SCTP) {
-                // Get the underlying sctp channel
-                SctpChannel sctpChannel = (SctpChannel) channel;
-
-                // Bind the secondary address.
-                // Please note that, bindAddress in the client channel should be done before connecting if you have not
-                // enable Dynamic Address Configuration. See net.sctp.addip_enable kernel param
-                if (this.extraHostAddresses != null) {
-                    for (int count = 0; count < this.extraHostAddresses.length; count++) {
-                        String localSecondaryAddress = this.extraHostAddresses[count];
-                        InetAddress localSecondaryInetAddress = InetAddress.getByName(localSecondaryAddress);
-
-                        sctpChannel.bindAddress(localSecondaryInetAddress).sync();
-                    }
+        // Bind the client channel. Nothing below blocks this thread, the steps are chained on the channel EventLoop
+        b.bind(this.localSocketAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    connectFailed(future, "binding");
+                    return;
                 }
+
+                // Bind the secondary addresses.
+                // Please note that, bindAddress in the client channel should be done before connecting if you have
+                // not enable Dynamic Address Configuration. See net.sctp.addip_enable kernel param
+                bindExtraHostAddress(future.channel(), 0);
             }
+        });
+    }
 
-            InetSocketAddress remoteAddress = new InetSocketAddress(this.peerAddress, this.peerPort);
+    /**
+     * Resolves the local, extra local and peer addresses before the first connection attempt. The addresses of an
+     * Association do not change, so the results are kept for the next attempts.
+     */
+    private void resolveAddresses() throws IOException {
+        InetAddress[] extraHostInetAddresses = null;
+        if (this.ipChannelType == IpChannelType.SCTP && this.extraHostAddresses != null) {
+            extraHostInetAddresses = new InetAddress[this.extraHostAddresses.length];
+            for (int count = 0; count < this.extraHostAddresses.length; count++) {
+                extraHostInetAddresses[count] = InetAddress.getByName(this.extraHostAddresses[count]);
+            }
+        }
 
-            // Finish connect
-            bindFuture.channel().connect(remoteAddress);
-            if (logger.isDebugEnabled()) {
-                logger.debug(String.format("Initiating connection scheduled: Association=%s remoteAddress=%s", this,
-                        remoteAddress));
+        InetSocketAddress localSocketAddress = new InetSocketAddress(this.hostAddress, this.hostPort);
+        InetSocketAddress remoteSocketAddress = new InetSocketAddress(this.peerAddress, this.peerPort);
+        if (localSocketAddress.isUnresolved())
+            throw new IOException(String.format("Can not resolve host address=%s", this.hostAddress));
+        if (remoteSocketAddress.isUnresolved())
+            throw new IOException(String.format("Can not resolve peer address=%s", this.peerAddress));
+
+        this.extraHostInetAddresses = extraHostInetAddresses;
+        this.localSocketAddress = localSocketAddress;
+        this.remoteSocketAddress = remoteSocketAddress;
+    }
+
+    private void bindExtraHostAddress(final Channel channel, final int index) {
+        InetAddress[] addresses = this.extraHostInetAddresses;
+        if (addresses == null || index >= addresses.length) {
+            this.connectChannel(channel);
+            return;
+        }
+
+        ((SctpChannel) channel).bindAddress(addresses[index]).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    connectFailed(future, "binding of an extra host address");
+                    return;
+                }
+                bindExtraHostAddress(channel, index + 1);
             }
-        } catch (Exception e) {
-            logger.error(String.format("Exception while finishing connection for Association=%s", this.getName()), e);
+        });
+    }
+
+    private void connectChannel(Channel channel) {
+        channel.connect(this.remoteSocketAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    connectFailed(future, "connecting");
+                }
+            }
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Initiating connection scheduled: Association=%s remoteAddress=%s", this,
+                    this.remoteSocketAddress));
+        }
+    }
+
+    /**
+     * Closes the channel of a failed connection attempt. The next attempt is scheduled when the channel is
+     * unregistered, or here if the channel never got registered.
+     */
+    private void connectFailed(ChannelFuture future, String step) {
+        logger.error(String.format("Exception while %s for Association=%s", step, this.getName()), future.cause());
+
+        Channel channel = future.channel();
+        if (channel.isRegistered()) {
+            channel.close();
+        } else {
+            this.scheduleConnect();
         }
     }
 
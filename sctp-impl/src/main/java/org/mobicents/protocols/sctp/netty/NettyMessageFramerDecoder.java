@@ -0,0 +1,63 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.util.List;
+
+import org.mobicents.protocols.sctp.MessageFramer;
+
+/**
+ * Splits the byte stream of a TCP channel into messages with a MessageFramer.
+ * Received buffers are cumulated as composite buffers and messages are
+ * passed on as slices of them, so no bytes are copied.
+ */
+public class NettyMessageFramerDecoder extends ByteToMessageDecoder {
+
+    private final MessageFramer messageFramer;
+
+    public NettyMessageFramerDecoder(MessageFramer messageFramer) {
+        this.messageFramer = messageFramer;
+        this.setCumulator(COMPOSITE_CUMULATOR);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        while (in.isReadable()) {
+            int messageLength;
+            try {
+                messageLength = this.messageFramer.getMessageLength(in);
+            } catch (Exception e) {
+                in.skipBytes(in.readableBytes());
+                throw new CorruptedFrameException(e.getMessage(), e);
+            }
+
+            if (messageLength < 0 || in.readableBytes() < messageLength)
+                return;
+
+            out.add(in.readSlice(messageLength).retain());
+        }
+    }
+}
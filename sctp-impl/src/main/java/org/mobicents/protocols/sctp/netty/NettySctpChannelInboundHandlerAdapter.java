@@ -26,7 +26,18 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.sctp.SctpMessage;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.Priority;
@@ -55,7 +66,47 @@ public class NettySctpChannelInboundHandlerAdapter extends ChannelInboundHandler
     protected Channel channel = null;
     protected ChannelHandlerContext ctx = null;
 
-    protected long lastCongestionMonitorSecondPart;
+    // Weight of a new sample in the smoothed write delay
+    private static final double CONG_DELAY_EWMA_WEIGHT = 0.25;
+    // Period of the congestion level checks while the level is above 0, in milliseconds
+    private static final long CONG_CHECK_INTERVAL = 100;
+
+    // Smoothed delay in seconds from writing a message to its completion, sampled for one write at a time
+    private volatile double congDelayEwma;
+    // nanoTime of the write of the sample in flight, 0 if none is
+    private final AtomicLong congSampleStartTime = new AtomicLong();
+    private final AtomicBoolean congCheckScheduled = new AtomicBoolean();
+    private final ChannelFutureListener congSampleListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            double delaySec = (double) (System.nanoTime() - congSampleStartTime.get()) / 1000000000;
+            congDelayEwma += CONG_DELAY_EWMA_WEIGHT * (delaySec - congDelayEwma);
+            congSampleStartTime.set(0);
+            updateCongestionLevel();
+        }
+    };
+    private final Runnable congCheckTask = new Runnable() {
+        @Override
+        public void run() {
+            congCheckScheduled.set(false);
+            updateCongestionLevel();
+        }
+    };
+
+    // flush consolidation: messages waiting for the next flush task on the channel EventLoop
+    private final Queue<Object> pendingWrites = new ConcurrentLinkedQueue<Object>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPendingWrites();
+        }
+    };
+
+    // Failed writes of the void promise are fired to exceptionCaught, of a burst of them one is logged per interval
+    private static final long EXCEPTION_LOG_INTERVAL = 1000;
+    private long lastExceptionLogTime;
+    private int suppressedExceptions;
 
     /**
      * 
@@ -70,8 +121,20 @@ public class NettySctpChannelInboundHandlerAdapter extends ChannelInboundHandler
             logger.debug(String.format("channelInactive event: association=%s", this.association));
         }
 
-        if (this.association != null)
+        if (this.association != null) {
+            // not sent data of the channel is dropped
+            this.association.setCongestionLevel(0);
+            this.association.resetWritability();
             this.association.markAssociationDown();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        this.updateCongestionLevel();
+        if (this.association != null)
+            this.association.writabilityChanged(ctx.channel().isWritable());
+        ctx.fireChannelWritabilityChanged();
     }
 
     @Override
@@ -201,43 +264,178 @@ public class NettySctpChannelInboundHandlerAdapter extends ChannelInboundHandler
     protected void writeAndFlush(Object message) {
         Channel ch = this.channel;
         if (ch != null) {
-            ChannelFuture future = ch.writeAndFlush(message);
-
-            long curMillisec = System.currentTimeMillis();
-            long secPart = curMillisec / 500;
-            if (lastCongestionMonitorSecondPart < secPart) {
-                lastCongestionMonitorSecondPart = secPart;
-                CongestionMonitor congestionMonitor = new CongestionMonitor();
-                future.addListener(congestionMonitor);
+            if (this.association.getManagement().isFlushConsolidation()) {
+                this.writeConsolidated(ch, message);
+                return;
             }
+
+            this.writeAndMonitor(ch, message, true);
         }
-     }
+    }
 
-    private void onCongestionMonitor(double delaySec) {
-        int newAlarmLevel = this.association.getCongestionLevel();
-        for (int i1 = this.association.getCongestionLevel() - 1; i1 >= 0; i1--) {
-            if (delaySec <= this.association.getManagement().congControl_BackToNormalDelayThreshold[i1]) {
-                newAlarmLevel = i1;
+    /**
+     * Writes the message without flushing the channel
+     */
+    protected void write(Object message) {
+        Channel ch = this.channel;
+        if (ch != null) {
+            // behind the messages waiting for the flush task, if any, so the order is kept
+            if (this.association.getManagement().isFlushConsolidation()) {
+                this.writeConsolidated(ch, message);
+                return;
             }
+
+            this.writeAndMonitor(ch, message, false);
+        }
+    }
+
+    protected void flush() {
+        Channel ch = this.channel;
+        if (ch != null && !this.association.getManagement().isFlushConsolidation()) {
+            ch.flush();
         }
-        for (int i1 = this.association.getCongestionLevel(); i1 < 3; i1++) {
-            if (delaySec >= this.association.getManagement().congControl_DelayThreshold[i1]) {
-                newAlarmLevel = i1 + 1;
+    }
+
+    /**
+     * Queues the message for a flush task on the EventLoop. The messages sent until the task runs are written by it
+     * and flushed together, so a burst of messages costs one task and one flush instead of one per message.
+     */
+    private void writeConsolidated(Channel ch, Object message) {
+        this.pendingWrites.add(message);
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            try {
+                ch.eventLoop().execute(this.flushTask);
+            } catch (RejectedExecutionException e) {
+                // the EventLoop is shut down, so is the channel
+                Object pending;
+                while ((pending = this.pendingWrites.poll()) != null) {
+                    ReferenceCountUtil.release(pending);
+                }
+                this.flushScheduled.set(false);
             }
         }
-        this.association.setCongestionLevel(newAlarmLevel);
     }
 
-    private class CongestionMonitor implements ChannelFutureListener {
-        long startTime = System.currentTimeMillis();
+    private void flushPendingWrites() {
+        // reset before draining, so a message added after the last poll schedules the next task
+        this.flushScheduled.set(false);
 
-        @Override
-        public void operationComplete(ChannelFuture arg0) throws Exception {
-            long delay = System.currentTimeMillis() - startTime;
-            double delaySec = (double) delay / 1000;
-            onCongestionMonitor(delaySec);
+        Channel ch = this.channel;
+        Object message = this.pendingWrites.poll();
+        if (message == null)
+            return;
+
+        this.writeAndMonitor(ch, message, false);
+        ChannelPromise voidPromise = ch.voidPromise();
+        while ((message = this.pendingWrites.poll()) != null) {
+            ch.write(message, voidPromise);
         }
+        ch.flush();
+    }
 
+    /**
+     * Writes the message, starting a write delay sample with it unless one is in flight, and checks the congestion
+     * level. Writes without a sample get the void promise, so they do not create a ChannelPromise. Their failures are
+     * fired to exceptionCaught.
+     */
+    private void writeAndMonitor(Channel ch, Object message, boolean flush) {
+        if (this.congSampleStartTime.get() == 0 && this.congSampleStartTime.compareAndSet(0, Math.max(System.nanoTime(), 1))) {
+            ChannelFuture future = flush ? ch.writeAndFlush(message) : ch.write(message);
+            future.addListener(this.congSampleListener);
+        } else if (flush) {
+            ch.writeAndFlush(message, ch.voidPromise());
+        } else {
+            ch.write(message, ch.voidPromise());
+        }
+
+        this.updateCongestionLevel();
+    }
+
+    /**
+     * Logs the exception and closes the connection. Writes to a channel already closed are only logged at debug
+     * level, the connection loss is reported by channelInactive. Of a burst of exceptions, like the failed writes
+     * queued when a connection breaks, one is logged per EXCEPTION_LOG_INTERVAL.
+     */
+    protected void handleException(ChannelHandlerContext ctx, Throwable cause) {
+        String assocName = this.association != null ? this.association.getName() : null;
+        if (cause instanceof ClosedChannelException) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Write to a closed channel for Associtaion: %s", assocName));
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - this.lastExceptionLogTime >= EXCEPTION_LOG_INTERVAL) {
+            logger.error(String.format("ExceptionCaught for Associtaion: %s, suppressed since the last one=%d\n", assocName,
+                    this.suppressedExceptions), cause);
+            this.lastExceptionLogTime = now;
+            this.suppressedExceptions = 0;
+        } else {
+            this.suppressedExceptions++;
+        }
+        ctx.close();
+    }
+
+    /**
+     * Recalculates the congestion level from the bytes pending in the outbound buffer and the smoothed write delay.
+     * While the level is above 0 the check repeats, so the level goes down when the buffer drains without new writes.
+     */
+    protected void updateCongestionLevel() {
+        Channel ch = this.channel;
+        if (ch == null)
+            return;
+
+        ChannelOutboundBuffer outboundBuffer = ch.unsafe().outboundBuffer();
+        long pendingBytes = outboundBuffer != null ? outboundBuffer.totalPendingWriteBytes() : 0;
+        double delaySec = 0;
+        if (pendingBytes > 0) {
+            // the sample in flight is at least as old as the delay of the messages queued now
+            delaySec = this.congDelayEwma;
+            long sampleStartTime = this.congSampleStartTime.get();
+            if (sampleStartTime != 0)
+                delaySec = Math.max(delaySec, (double) (System.nanoTime() - sampleStartTime) / 1000000000);
+        }
+
+        int level = this.association.getCongestionLevel();
+        int newLevel = this.calculateCongestionLevel(level, delaySec, pendingBytes);
+        if (newLevel != level) {
+            synchronized (this) {
+                // the level may have been updated by another thread meanwhile
+                level = this.association.getCongestionLevel();
+                newLevel = this.calculateCongestionLevel(level, delaySec, pendingBytes);
+                this.association.setCongestionLevel(newLevel);
+            }
+        }
+
+        if (newLevel > 0 && ch.isActive() && this.congCheckScheduled.compareAndSet(false, true)) {
+            try {
+                ch.eventLoop().schedule(this.congCheckTask, CONG_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                this.congCheckScheduled.set(false);
+            }
+        }
+    }
+
+    private int calculateCongestionLevel(int level, double delaySec, long pendingBytes) {
+        NettySctpManagementImpl management = this.association.getManagement();
+        double[] delayThreshold = management.congControl_DelayThreshold;
+        double[] backToNormalDelayThreshold = management.congControl_BackToNormalDelayThreshold;
+        int[] writeBufferThreshold = management.congControl_WriteBufferThreshold;
+        int[] backToNormalWriteBufferThreshold = management.congControl_BackToNormalWriteBufferThreshold;
+
+        int newLevel = level;
+        for (int i1 = level - 1; i1 >= 0; i1--) {
+            if (delaySec <= backToNormalDelayThreshold[i1] && pendingBytes <= backToNormalWriteBufferThreshold[i1]) {
+                newLevel = i1;
+            }
+        }
+        for (int i1 = level; i1 < 3; i1++) {
+            if (delaySec >= delayThreshold[i1] || pendingBytes >= writeBufferThreshold[i1]) {
+                newLevel = i1 + 1;
+            }
+        }
+        return newLevel;
     }
 
     protected void closeChannel() {
@@ -22,7 +22,6 @@ package org.mobicents.protocols.sctp.netty;
 
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.sctp.SctpChannel;
-import io.netty.handler.codec.sctp.SctpMessageCompletionHandler;
 
 /**
  * @author <a href="mailto:amit.bhayani@telestax.com">Amit Bhayani</a>
@@ -42,7 +41,10 @@ public class NettySctpClientChannelInitializer extends ChannelInitializer<SctpCh
 
     @Override
     protected void initChannel(SctpChannel ch) throws Exception {
-        ch.pipeline().addLast(new SctpMessageCompletionHandler(), new NettySctpClientHandler(this.nettyAssociationImpl));
+        NettySctpManagementImpl management = this.nettyAssociationImpl.getManagement();
+        ch.pipeline().addLast(
+                new NettySctpReassemblyHandler(this.nettyAssociationImpl.getName(), management.getReassemblyMaxStreamBytes(),
+                        management.getReassemblyMaxAssociationBytes()), new NettySctpClientHandler(this.nettyAssociationImpl));
 
     }
 }
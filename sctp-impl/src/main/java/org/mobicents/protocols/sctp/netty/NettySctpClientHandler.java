@@ -90,10 +90,7 @@ public class NettySctpClientHandler extends NettySctpChannelInboundHandlerAdapte
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         // Close the connection when an exception is raised.
-        logger.error("ExceptionCaught for Associtaion: " + this.association.getName() + "\n", cause);
-        ctx.close();
-
-//        this.association.scheduleConnect();
+        this.handleException(ctx, cause);
     }
 
     // byte [] m3uaMessage = new byte
@@ -19,9 +19,24 @@
  */
 package org.mobicents.protocols.sctp.netty;
 
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -30,10 +45,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javolution.text.TextBuilder;
 import javolution.util.FastList;
@@ -52,6 +73,10 @@ import org.mobicents.protocols.api.ManagementEventListener;
 import org.mobicents.protocols.api.Server;
 import org.mobicents.protocols.api.ServerListener;
 import org.mobicents.protocols.sctp.AssociationMap;
+import org.mobicents.protocols.sctp.ExponentialBackoffReconnectPolicy;
+import org.mobicents.protocols.sctp.MessageFramer;
+import org.mobicents.protocols.sctp.PeerAssociationIndex;
+import org.mobicents.protocols.sctp.ReconnectPolicy;
 
 import com.sun.nio.sctp.SctpStandardSocketOptions;
 import com.sun.nio.sctp.SctpStandardSocketOptions.InitMaxStreams;
@@ -74,6 +99,13 @@ public class NettySctpManagementImpl implements Management {
     private static final String CONNECT_DELAY_PROP = "connectdelay";
     private static final String SINGLE_THREAD_PROP = "singlethread";
     private static final String WORKER_THREADS_PROP = "workerthreads";
+    private static final String BOSS_GROUP_THREAD_COUNT_PROP = "bossgroupthreadcount";
+    private static final String WORKER_GROUP_THREAD_COUNT_PROP = "workergroupthreadcount";
+    private static final String TCP_TRANSPORT_PROP = "tcptransport";
+    private static final String OPTION_TCP_EPOLL_EDGE_TRIGGERED_PROP = "optiontcpepolledgetriggered";
+    private static final String OPTION_SO_REUSEPORT_PROP = "optionsoreuseport";
+    private static final String TCP_SERVER_ACCEPTOR_COUNT_PROP = "tcpserveracceptorcount";
+    private static final String OPTION_SO_BACKLOG_PROP = "optionsobacklog";
 
     public static final String CONG_CONTROL_DELAY_THRESHOLD_1 = "congControl_DelayThreshold_1";
     public static final String CONG_CONTROL_DELAY_THRESHOLD_2 = "congControl_DelayThreshold_2";
@@ -81,6 +113,11 @@ public class NettySctpManagementImpl implements Management {
     public static final String CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_1 = "congControl_BackToNormalDelayThreshold_1";
     public static final String CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_2 = "congControl_BackToNormalDelayThreshold_2";
     public static final String CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_3 = "congControl_BackToNormalDelayThreshold_3";
+    public static final String CONG_CONTROL_WRITE_BUFFER_THRESHOLD = "congControl_WriteBufferThreshold_";
+    public static final String CONG_CONTROL_BACK_TO_NORMAL_WRITE_BUFFER_THRESHOLD = "congControl_BackToNormalWriteBufferThreshold_";
+
+    // Netty default of the write buffer high water mark
+    private static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 64 * 1024;
 
     // TODO: make options configurable in future
 //    public static final String OPTION_SCTP_DISABLE_FRAGMENTS = "optionSctpDisableFragments";
@@ -105,25 +142,86 @@ public class NettySctpManagementImpl implements Management {
     protected String persistDir = null;
     private int connectDelay = 5000;
 
+    // Thread counts of the EventLoopGroups. The boss group accepts server connections, the worker group serves the
+    // I/O of both server and client channels. 0 for the Netty default of twice the count of cores
+    private int bossGroupThreadCount = 1;
+    private int workerGroupThreadCount = 0;
+    // Persisted options read at the stack start which were updated while the stack was not running. The loading of
+    // the persisted values skips them and they are stored once the stack is started
+    private final Set<String> updatedStartOptions = new HashSet<String>();
+
+    // Transport of TCP channels as configured and as resolved at the stack start
+    private NettyTcpTransport tcpTransport = NettyTcpTransport.AUTO;
+    private volatile NettyTcpTransport activeTcpTransport = null;
+    // epoll transport only: edge-triggered mode of TCP channels, level-triggered if false
+    private boolean optionTcpEpollEdgeTriggered = true;
+    // epoll transport only: SO_REUSEPORT of TCP listening channels
+    private boolean optionSoReuseport = false;
+    // epoll transport only: count of SO_REUSEPORT listening channels bound for each TCP Server
+    private int tcpServerAcceptorCount = 1;
+    // Length of the queue of not yet accepted connections of Server listening channels
+    private int optionSoBacklog = 100;
+
+    // Sends of all Associations are flushed once per EventLoop task instead of once per message
+    private volatile boolean flushConsolidation = false;
+
+    // Max time in milliseconds a client connection attempt may take
+    private int connectTimeout = 30000;
+
+    // Delay of connection attempts of CLIENT Associations which do not have their own ReconnectPolicy
+    private volatile ReconnectPolicy reconnectPolicy = new ExponentialBackoffReconnectPolicy();
+
+    // Max count of connection attempts in progress at a time, 0 if unlimited
+    private volatile int maxConcurrentConnects = 64;
+    private final AtomicInteger concurrentConnects = new AtomicInteger();
+
     protected double[] congControl_DelayThreshold = new double[] { 2.5, 8, 14 };
     protected double[] congControl_BackToNormalDelayThreshold = new double[] { 1.5, 5.5, 10 };
+    // Bytes pending in the outbound buffer of a channel for the congestion levels 1, 2 and 3 and for returning from them.
+    // The level 1 values are the write buffer water marks of the channels
+    protected volatile int[] congControl_WriteBufferThreshold = new int[] { 64 * 1024, 256 * 1024, 1024 * 1024 };
+    protected volatile int[] congControl_BackToNormalWriteBufferThreshold = new int[] { 32 * 1024, 128 * 1024, 512 * 1024 };
 
-//    private int workerThreads = DEFAULT_IO_THREADS;
-//    private boolean singleThread = true;
+    private int workerThreads = DEFAULT_IO_THREADS;
+    private boolean singleThread = true;
+    // Max count of received messages of an Association waiting for the worker executors, reading of its channel is
+    // paused over it till the half of it is delivered
+    private volatile int workerQueueMaxMessages = 10000;
 
     // private NettyClientOpsThread nettyClientOpsThread = null;
 
     private ServerListener serverListener = null;
 
+    // Splits the byte stream of TCP Associations into messages, null if
+    // disabled
+    private MessageFramer messageFramer = null;
+
+    // Limits of the reassembly of SCTP messages received in parts
+    private int reassemblyMaxStreamBytes = 1024 * 1024;
+    private int reassemblyMaxAssociationBytes = 4 * 1024 * 1024;
+
     private FastList<ManagementEventListener> managementEventListeners = new FastList<ManagementEventListener>();
     private FastList<CongestionListener> congestionListeners = new FastList<CongestionListener>();
     protected FastList<Server> servers = new FastList<Server>();
     protected AssociationMap<String, Association> associations = new AssociationMap<String, Association>();
+
+    // SERVER Associations by server name, peer address and port for accept
+    protected final PeerAssociationIndex<NettyAssociationImpl> peerAssociationIndex = new PeerAssociationIndex<NettyAssociationImpl>();
+
     private volatile boolean started = false;
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    // Groups of TCP channels, the same as bossGroup and workerGroup unless a native transport is active
+    private EventLoopGroup tcpBossGroup;
+    private EventLoopGroup tcpWorkerGroup;
+    // Deliver received messages to AssociationListeners out of the EventLoops when the stack is not in single thread
+    // mode. Messages of a stream always go to the same executor so their order is kept
+    private DefaultEventExecutorGroup workerExecutorGroup;
+    private volatile EventExecutor[] workerExecutors;
     private ScheduledExecutorService clientExecutor;
+    // Resolves the addresses of CLIENT Associations, the blocking lookups are kept off clientExecutor
+    private ExecutorService resolverExecutor;
 
     // SctpStandardSocketOptions
 
@@ -231,10 +329,92 @@ public class NettySctpManagementImpl implements Management {
         return workerGroup;
     }
 
+    protected EventLoopGroup getTcpBossGroup() {
+        return tcpBossGroup;
+    }
+
+    protected EventLoopGroup getTcpWorkerGroup() {
+        return tcpWorkerGroup;
+    }
+
+    protected Class<? extends SocketChannel> getTcpChannelClass() {
+        return this.activeTcpTransport == NettyTcpTransport.EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    protected Class<? extends ServerSocketChannel> getTcpServerChannelClass() {
+        return this.activeTcpTransport == NettyTcpTransport.EPOLL ? EpollServerSocketChannel.class
+                : NioServerSocketChannel.class;
+    }
+
+    /**
+     * Applies the transport specific options to the Bootstrap of a TCP client channel
+     */
+    protected void applyTcpOptions(Bootstrap b) {
+        if (this.activeTcpTransport == NettyTcpTransport.EPOLL) {
+            b.option(EpollChannelOption.EPOLL_MODE, this.optionTcpEpollEdgeTriggered ? EpollMode.EDGE_TRIGGERED
+                    : EpollMode.LEVEL_TRIGGERED);
+        }
+    }
+
+    /**
+     * Applies the transport specific options to the ServerBootstrap of a TCP Server
+     */
+    protected void applyTcpOptions(ServerBootstrap b) {
+        if (this.activeTcpTransport == NettyTcpTransport.EPOLL) {
+            EpollMode epollMode = this.optionTcpEpollEdgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+            b.option(EpollChannelOption.EPOLL_MODE, epollMode);
+            b.childOption(EpollChannelOption.EPOLL_MODE, epollMode);
+            if (this.optionSoReuseport || this.tcpServerAcceptorCount > 1)
+                b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+    }
+
+    /**
+     * Applies the level 1 write buffer congestion thresholds as the write buffer water marks to a client channel
+     */
+    protected void applyWriteBufferWaterMarks(Bootstrap b) {
+        int high = this.congControl_WriteBufferThreshold[0];
+        int low = this.congControl_BackToNormalWriteBufferThreshold[0];
+        // Netty rejects a high water mark below the current low one and vice versa, so the order matters
+        if (low > DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK) {
+            b.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+            b.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+        } else {
+            b.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+            b.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+        }
+    }
+
+    /**
+     * Applies the level 1 write buffer congestion thresholds as the write buffer water marks to accepted channels
+     */
+    protected void applyWriteBufferWaterMarks(ServerBootstrap b) {
+        int high = this.congControl_WriteBufferThreshold[0];
+        int low = this.congControl_BackToNormalWriteBufferThreshold[0];
+        if (low > DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK) {
+            b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+            b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+        } else {
+            b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+            b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+        }
+    }
+
+    /**
+     * @return the count of listening channels to bind for a TCP Server, 1 unless the epoll transport is active
+     */
+    protected int getActiveTcpServerAcceptorCount() {
+        return this.activeTcpTransport == NettyTcpTransport.EPOLL ? this.tcpServerAcceptorCount : 1;
+    }
+
     protected ScheduledExecutorService getClientExecutor() {
         return clientExecutor;
     }
 
+    protected ExecutorService getResolverExecutor() {
+        return resolverExecutor;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -324,12 +504,6 @@ public class NettySctpManagementImpl implements Management {
 
             logger.info(String.format("SCTP configuration file path %s", persistFile.toString()));
 
-            this.bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("Sctp-BossGroup-" + this.name));
-            // TODO: make a thread count for WorkerGroup configurable
-            this.workerGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("Sctp-WorkerGroup-" + this.name));
-            this.clientExecutor = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("Sctp-ClientExecutorGroup-"
-                    + this.name));
-
             // this.nettyClientOpsThread = new NettyClientOpsThread(this);
             // (new Thread(this.nettyClientOpsThread )).start();
 
@@ -338,11 +512,48 @@ public class NettySctpManagementImpl implements Management {
             } catch (FileNotFoundException e) {
                 logger.warn(String.format("Failed to load the SCTP configuration file. \n%s", e.getMessage()));
             }
+            if (!this.updatedStartOptions.isEmpty()) {
+                this.updatedStartOptions.clear();
+                this.store();
+            }
+
+            // EventLoopGroups are created after loading as their thread counts are persisted
+            this.bossGroup = new NioEventLoopGroup(this.bossGroupThreadCount, new DefaultThreadFactory("Sctp-BossGroup-"
+                    + this.name));
+            this.workerGroup = new NioEventLoopGroup(this.workerGroupThreadCount, new DefaultThreadFactory(
+                    "Sctp-WorkerGroup-" + this.name));
+            this.startTcpTransport();
+            this.clientExecutor = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("Sctp-ClientExecutorGroup-"
+                    + this.name));
+            this.resolverExecutor = Executors.newCachedThreadPool(new DefaultThreadFactory("Sctp-ResolverExecutor-"
+                    + this.name));
+            if (!this.singleThread) {
+                this.workerExecutorGroup = new DefaultEventExecutorGroup(this.workerThreads, new DefaultThreadFactory(
+                        "Sctp-WorkerExecutorGroup-" + this.name));
+                EventExecutor[] executors = new EventExecutor[this.workerThreads];
+                Iterator<EventExecutor> it = this.workerExecutorGroup.iterator();
+                for (int i = 0; i < executors.length; i++) {
+                    executors[i] = it.next();
+                }
+                this.workerExecutors = executors;
+            }
+
+            for (FastList.Node<Server> n = this.servers.head(), end = this.servers.tail(); (n = n.getNext()) != end;) {
+                Server serverTemp = n.getValue();
+                if (serverTemp.isStarted()) {
+                    try {
+                        ((NettyServerImpl) serverTemp).start();
+                    } catch (Exception e) {
+                        logger.error(String.format("Error while initiating Server=%s", serverTemp.getName()), e);
+                    }
+                }
+            }
 
             this.started = true;
 
             if (logger.isInfoEnabled()) {
-                logger.info(String.format("Started SCTP Management=%s", this.name));
+                logger.info(String.format("Started SCTP Management=%s WorkerThreads=%d SingleThread=%s", this.name,
+                        (this.singleThread ? 0 : this.workerThreads), this.singleThread));
             }
 
             for (ManagementEventListener lstr : managementEventListeners) {
@@ -420,8 +631,19 @@ public class NettySctpManagementImpl implements Management {
         // TODO - make a general shutdown and waiting for it instead of "waiting till stopping associations" 
         this.bossGroup.shutdownGracefully();
         this.workerGroup.shutdownGracefully();
+        if (this.tcpBossGroup != this.bossGroup) {
+            this.tcpBossGroup.shutdownGracefully();
+            this.tcpWorkerGroup.shutdownGracefully();
+        }
         this.clientExecutor.shutdown();
-       
+        this.resolverExecutor.shutdown();
+        if (this.workerExecutorGroup != null) {
+            // messages already handed over are still delivered
+            this.workerExecutors = null;
+            this.workerExecutorGroup.shutdownGracefully();
+            this.workerExecutorGroup = null;
+        }
+
 
         // TODO Should servers be also checked for shutdown?
 
@@ -439,6 +661,62 @@ public class NettySctpManagementImpl implements Management {
         return this.started;
     }
 
+    /**
+     * @return the MessageFramer of TCP Associations, null if received data is delivered as it is read
+     */
+    public MessageFramer getMessageFramer() {
+        return messageFramer;
+    }
+
+    /**
+     * @param messageFramer splits the byte stream of TCP Associations into messages, for example SigtranMessageFramer
+     *        for M3UA or SUA. null (the default) delivers received data as it is read
+     */
+    public void setMessageFramer(MessageFramer messageFramer) throws Exception {
+        if (this.started)
+            throw new Exception("MessageFramer parameter can be updated only when SCTP stack is NOT running");
+
+        this.messageFramer = messageFramer;
+    }
+
+    /**
+     * @return the max size of a SCTP message reassembled from parts
+     */
+    public int getReassemblyMaxStreamBytes() {
+        return reassemblyMaxStreamBytes;
+    }
+
+    /**
+     * @param reassemblyMaxStreamBytes the max size of a SCTP message reassembled from parts. Bigger messages are dropped
+     */
+    public void setReassemblyMaxStreamBytes(int reassemblyMaxStreamBytes) throws Exception {
+        if (this.started)
+            throw new Exception("ReassemblyMaxStreamBytes parameter can be updated only when SCTP stack is NOT running");
+        if (reassemblyMaxStreamBytes < 1)
+            throw new Exception("ReassemblyMaxStreamBytes must be greater than 0");
+
+        this.reassemblyMaxStreamBytes = reassemblyMaxStreamBytes;
+    }
+
+    /**
+     * @return the max count of bytes pending reassembly on all streams of one Association
+     */
+    public int getReassemblyMaxAssociationBytes() {
+        return reassemblyMaxAssociationBytes;
+    }
+
+    /**
+     * @param reassemblyMaxAssociationBytes the max count of bytes pending reassembly on all streams of one Association
+     */
+    public void setReassemblyMaxAssociationBytes(int reassemblyMaxAssociationBytes) throws Exception {
+        if (this.started)
+            throw new Exception("ReassemblyMaxAssociationBytes parameter can be updated only when SCTP stack is NOT running");
+        if (reassemblyMaxAssociationBytes < 1)
+            throw new Exception("ReassemblyMaxAssociationBytes must be greater than 0");
+
+        this.reassemblyMaxAssociationBytes = reassemblyMaxAssociationBytes;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -795,6 +1073,7 @@ public class NettySctpManagementImpl implements Management {
             newAssociations.put(assocName, association);
             this.associations = newAssociations;
             // this.associations.put(assocName, association);
+            this.peerAssociationIndex.add(association);
 
             FastList<String> newAssociations2 = new FastList<String>();
             newAssociations2.addAll(((NettyServerImpl) server).associations);
@@ -948,6 +1227,7 @@ public class NettySctpManagementImpl implements Management {
             newAssociations.remove(assocName);
             this.associations = newAssociations;
             // this.associations.remove(assocName);
+            this.peerAssociationIndex.remove((NettyAssociationImpl) association);
 
             if (((NettyAssociationImpl) association).getAssociationType() == AssociationType.SERVER) {
                 for (FastList.Node<Server> n = this.servers.head(), end = this.servers.tail(); (n = n.getNext()) != end;) {
@@ -1086,6 +1366,282 @@ public class NettySctpManagementImpl implements Management {
         this.store();
     }
 
+    /**
+     * @return the thread count of the EventLoopGroup accepting server connections
+     */
+    public int getBossGroupThreadCount() {
+        return bossGroupThreadCount;
+    }
+
+    /**
+     * @param bossGroupThreadCount the thread count of the EventLoopGroup accepting server connections, 0 for the Netty
+     *        default. Can be updated only when the stack is not running
+     */
+    public void setBossGroupThreadCount(int bossGroupThreadCount) throws Exception {
+        if (this.started)
+            throw new Exception("BossGroupThreadCount parameter can be updated only when SCTP stack is NOT running");
+        if (bossGroupThreadCount < 0)
+            throw new Exception("BossGroupThreadCount can not be negative");
+
+        this.bossGroupThreadCount = bossGroupThreadCount;
+        this.updatedStartOptions.add(BOSS_GROUP_THREAD_COUNT_PROP);
+    }
+
+    /**
+     * @return the thread count of the EventLoopGroup serving the I/O of server and client channels
+     */
+    public int getWorkerGroupThreadCount() {
+        return workerGroupThreadCount;
+    }
+
+    /**
+     * @param workerGroupThreadCount the thread count of the EventLoopGroup serving the I/O of server and client
+     *        channels, 0 for the Netty default of twice the count of cores. Can be updated only when the stack is not
+     *        running
+     */
+    public void setWorkerGroupThreadCount(int workerGroupThreadCount) throws Exception {
+        if (this.started)
+            throw new Exception("WorkerGroupThreadCount parameter can be updated only when SCTP stack is NOT running");
+        if (workerGroupThreadCount < 0)
+            throw new Exception("WorkerGroupThreadCount can not be negative");
+
+        this.workerGroupThreadCount = workerGroupThreadCount;
+        this.updatedStartOptions.add(WORKER_GROUP_THREAD_COUNT_PROP);
+    }
+
+    /**
+     * Creates the EventLoopGroups of TCP channels for the configured transport, falling back to the NIO groups
+     */
+    private void startTcpTransport() {
+        this.activeTcpTransport = NettyTcpTransport.NIO;
+        this.tcpBossGroup = this.bossGroup;
+        this.tcpWorkerGroup = this.workerGroup;
+
+        if (this.tcpTransport == NettyTcpTransport.NIO)
+            return;
+
+        Throwable cause = Epoll.unavailabilityCause();
+        if (cause == null) {
+            // native channels can only be registered on the EventLoops of their own transport
+            EventLoopGroup epollBossGroup = null;
+            try {
+                // each acceptor of a TCP Server gets an own EventLoop if the count of threads is limited
+                int tcpBossGroupThreadCount = this.bossGroupThreadCount == 0 ? 0 : Math.max(this.bossGroupThreadCount,
+                        this.tcpServerAcceptorCount);
+                epollBossGroup = new EpollEventLoopGroup(tcpBossGroupThreadCount, new DefaultThreadFactory(
+                        "Sctp-TcpBossGroup-" + this.name));
+                this.tcpWorkerGroup = new EpollEventLoopGroup(this.workerGroupThreadCount, new DefaultThreadFactory(
+                        "Sctp-TcpWorkerGroup-" + this.name));
+                this.tcpBossGroup = epollBossGroup;
+                this.activeTcpTransport = NettyTcpTransport.EPOLL;
+                return;
+            } catch (Throwable e) {
+                // the native library can be loaded but still be unusable with this JVM
+                if (epollBossGroup != null)
+                    epollBossGroup.shutdownGracefully();
+                cause = e;
+            }
+        }
+
+        if (this.tcpTransport == NettyTcpTransport.EPOLL) {
+            logger.warn(String.format("Native epoll transport is not available, TCP uses NIO transport. Cause: %s", cause));
+        } else if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Native epoll transport is not available, TCP uses NIO transport. Cause: %s", cause));
+        }
+    }
+
+    /**
+     * @return the configured transport of TCP Associations and Servers
+     */
+    public NettyTcpTransport getTcpTransport() {
+        return tcpTransport;
+    }
+
+    /**
+     * @param tcpTransport the transport of TCP Associations and Servers. AUTO uses the native epoll transport when
+     *        it is available. Can be updated only when the stack is not running
+     */
+    public void setTcpTransport(NettyTcpTransport tcpTransport) throws Exception {
+        if (this.started)
+            throw new Exception("TcpTransport parameter can be updated only when SCTP stack is NOT running");
+        if (tcpTransport == null)
+            throw new Exception("TcpTransport can not be null");
+
+        this.tcpTransport = tcpTransport;
+        this.updatedStartOptions.add(TCP_TRANSPORT_PROP);
+    }
+
+    /**
+     * @return the transport which TCP Associations and Servers use, null if the stack is not started
+     */
+    public NettyTcpTransport getActiveTcpTransport() {
+        return activeTcpTransport;
+    }
+
+    public boolean getOptionTcpEpollEdgeTriggered() {
+        return optionTcpEpollEdgeTriggered;
+    }
+
+    /**
+     * @param optionTcpEpollEdgeTriggered edge-triggered (true, the default) or level-triggered mode of TCP channels of
+     *        the epoll transport. Can be updated only when the stack is not running
+     */
+    public void setOptionTcpEpollEdgeTriggered(boolean optionTcpEpollEdgeTriggered) throws Exception {
+        if (this.started)
+            throw new Exception("OptionTcpEpollEdgeTriggered parameter can be updated only when SCTP stack is NOT running");
+
+        this.optionTcpEpollEdgeTriggered = optionTcpEpollEdgeTriggered;
+        this.updatedStartOptions.add(OPTION_TCP_EPOLL_EDGE_TRIGGERED_PROP);
+    }
+
+    public boolean getOptionSoReuseport() {
+        return optionSoReuseport;
+    }
+
+    /**
+     * @param optionSoReuseport SO_REUSEPORT of the listening channels of TCP Servers, used with the epoll transport
+     *        only. Can be updated only when the stack is not running
+     */
+    public void setOptionSoReuseport(boolean optionSoReuseport) throws Exception {
+        if (this.started)
+            throw new Exception("OptionSoReuseport parameter can be updated only when SCTP stack is NOT running");
+
+        this.optionSoReuseport = optionSoReuseport;
+        this.updatedStartOptions.add(OPTION_SO_REUSEPORT_PROP);
+    }
+
+    public boolean isFlushConsolidation() {
+        return flushConsolidation;
+    }
+
+    /**
+     * @param flushConsolidation if true, the messages sent by Association.send(PayloadData) are written by a task on
+     *        the channel EventLoop, and all messages sent until the task runs are flushed together. This saves a
+     *        syscall per message for bursts at the cost of the task hand-over latency
+     */
+    public void setFlushConsolidation(boolean flushConsolidation) {
+        this.flushConsolidation = flushConsolidation;
+    }
+
+    public int getTcpServerAcceptorCount() {
+        return tcpServerAcceptorCount;
+    }
+
+    /**
+     * @param tcpServerAcceptorCount the count of listening channels bound with SO_REUSEPORT to the address of each TCP
+     *        Server. The kernel spreads the incoming connections over them and each accepts on its own EventLoop. Used
+     *        with the epoll transport only, a single channel is bound otherwise. Can be updated only when the stack is
+     *        not running
+     */
+    public void setTcpServerAcceptorCount(int tcpServerAcceptorCount) throws Exception {
+        if (this.started)
+            throw new Exception("TcpServerAcceptorCount parameter can be updated only when SCTP stack is NOT running");
+        if (tcpServerAcceptorCount < 1)
+            throw new Exception("TcpServerAcceptorCount must be greater than 0");
+
+        this.tcpServerAcceptorCount = tcpServerAcceptorCount;
+        this.updatedStartOptions.add(TCP_SERVER_ACCEPTOR_COUNT_PROP);
+    }
+
+    public int getOptionSoBacklog() {
+        return optionSoBacklog;
+    }
+
+    /**
+     * @param optionSoBacklog the length of the queue of connections not yet accepted by a Server. Can be updated
+     *        only when the stack is not running
+     */
+    public void setOptionSoBacklog(int optionSoBacklog) throws Exception {
+        if (this.started)
+            throw new Exception("OptionSoBacklog parameter can be updated only when SCTP stack is NOT running");
+        if (optionSoBacklog < 1)
+            throw new Exception("OptionSoBacklog must be greater than 0");
+
+        this.optionSoBacklog = optionSoBacklog;
+        this.updatedStartOptions.add(OPTION_SO_BACKLOG_PROP);
+    }
+
+    /**
+     * @return the max time in milliseconds a client connection attempt may take
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param connectTimeout the max time in milliseconds a client connection attempt may take. A timed out attempt
+     *        counts as failed and the next one is scheduled by the ReconnectPolicy
+     */
+    public void setConnectTimeout(int connectTimeout) throws Exception {
+        if (connectTimeout < 1)
+            throw new Exception("ConnectTimeout must be greater than 0");
+
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @return the ReconnectPolicy of CLIENT Associations which do not have their own one
+     */
+    public ReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * @param reconnectPolicy the ReconnectPolicy of CLIENT Associations which do not have their own one.
+     *        ExponentialBackoffReconnectPolicy by default, FixedDelayReconnectPolicy waits connectDelay before each attempt
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        if (reconnectPolicy == null)
+            throw new NullPointerException("ReconnectPolicy can not be null");
+
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * @return the max count of connection attempts in progress at a time, 0 if unlimited
+     */
+    public int getMaxConcurrentConnects() {
+        return maxConcurrentConnects;
+    }
+
+    /**
+     * @param maxConcurrentConnects the max count of connection attempts in progress at a time, 0 if unlimited. Further
+     *        attempts wait for a free slot
+     */
+    public void setMaxConcurrentConnects(int maxConcurrentConnects) {
+        this.maxConcurrentConnects = maxConcurrentConnects;
+    }
+
+    /**
+     * @return the count of connection attempts in progress
+     */
+    public int getConcurrentConnects() {
+        return this.concurrentConnects.get();
+    }
+
+    /**
+     * Takes a slot for a connection attempt
+     *
+     * @return false if maxConcurrentConnects attempts are already in progress
+     */
+    protected boolean acquireConnect() {
+        int max = this.maxConcurrentConnects;
+        while (true) {
+            int current = this.concurrentConnects.get();
+            if (max > 0 && current >= max)
+                return false;
+            if (this.concurrentConnects.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Gives back the slot of a finished connection attempt
+     */
+    protected void releaseConnect() {
+        this.concurrentConnects.decrementAndGet();
+    }
+
     @Override
     public double getCongControl_DelayThreshold_1() {
         return congControl_DelayThreshold[0];
@@ -1179,6 +1735,63 @@ public class NettySctpManagementImpl implements Management {
         this.store();
     }
 
+    /**
+     * @return the bytes pending in the outbound buffer of a channel at which the congestion level becomes 1, 2 or 3
+     */
+    public int[] getCongControl_WriteBufferThreshold() {
+        return this.congControl_WriteBufferThreshold.clone();
+    }
+
+    /**
+     * @param val the bytes pending in the outbound buffer of a channel at which the congestion level becomes 1, 2 or 3.
+     *        Array must have 3 ascending values. The first one is the write buffer high water mark of the channels
+     *        opened after the update
+     */
+    public void setCongControl_WriteBufferThreshold(int[] val) throws Exception {
+        if (!this.started)
+            throw new Exception("CongControl_WriteBufferThreshold parameter can be updated only when SCTP stack is running");
+        this.checkWriteBufferThresholds(val, this.congControl_BackToNormalWriteBufferThreshold);
+
+        this.congControl_WriteBufferThreshold = val.clone();
+
+        this.store();
+    }
+
+    /**
+     * @return the bytes pending in the outbound buffer of a channel at which the congestion level reduces to 0, 1 or 2
+     */
+    public int[] getCongControl_BackToNormalWriteBufferThreshold() {
+        return this.congControl_BackToNormalWriteBufferThreshold.clone();
+    }
+
+    /**
+     * @param val the bytes pending in the outbound buffer of a channel at which the congestion level reduces to 0, 1
+     *        or 2. Array must have 3 ascending values, each below the matching CongControl_WriteBufferThreshold. The
+     *        first one is the write buffer low water mark of the channels opened after the update
+     */
+    public void setCongControl_BackToNormalWriteBufferThreshold(int[] val) throws Exception {
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalWriteBufferThreshold parameter can be updated only when SCTP stack is running");
+        this.checkWriteBufferThresholds(this.congControl_WriteBufferThreshold, val);
+
+        this.congControl_BackToNormalWriteBufferThreshold = val.clone();
+
+        this.store();
+    }
+
+    private void checkWriteBufferThresholds(int[] threshold, int[] backToNormalThreshold) throws Exception {
+        if (threshold == null || threshold.length != 3 || backToNormalThreshold == null || backToNormalThreshold.length != 3)
+            throw new Exception("Write buffer thresholds must have 3 values");
+        for (int i = 0; i < 3; i++) {
+            if (backToNormalThreshold[i] < 0 || backToNormalThreshold[i] >= threshold[i]
+                    || (i > 0 && threshold[i] < threshold[i - 1]))
+                throw new Exception(String.format(
+                        "Write buffer thresholds must ascend and back to normal threshold must be below threshold, level=%d",
+                        i + 1));
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1186,8 +1799,7 @@ public class NettySctpManagementImpl implements Management {
      */
     @Override
     public int getWorkerThreads() {
-        return 1;
-//        return this.workerThreads;
+        return this.workerThreads;
     }
 
     /*
@@ -1197,13 +1809,13 @@ public class NettySctpManagementImpl implements Management {
      */
     @Override
     public void setWorkerThreads(int workerThreads) throws Exception {
-//        if (this.started)
-//            throw new Exception("WorkerThreads parameter can be updated only when SCTP stack is NOT running");
-//
-//        if (workerThreads < 1) {
-//            workerThreads = DEFAULT_IO_THREADS;
-//        }
-//        this.workerThreads = workerThreads;
+        if (this.started)
+            throw new Exception("WorkerThreads parameter can be updated only when SCTP stack is NOT running");
+
+        if (workerThreads < 1) {
+            workerThreads = DEFAULT_IO_THREADS;
+        }
+        this.workerThreads = workerThreads;
     }
 
     /*
@@ -1213,8 +1825,7 @@ public class NettySctpManagementImpl implements Management {
      */
     @Override
     public boolean isSingleThread() {
-        return true;
-//        return this.singleThread;
+        return this.singleThread;
     }
 
     /*
@@ -1224,11 +1835,42 @@ public class NettySctpManagementImpl implements Management {
      */
     @Override
     public void setSingleThread(boolean singleThread) throws Exception {
-//        if (this.started)
-//            throw new Exception("SingleThread parameter can be updated only when SCTP stack is NOT running");
-//
-//        this.singleThread = singleThread;
+        if (this.started)
+            throw new Exception("SingleThread parameter can be updated only when SCTP stack is NOT running");
 
+        this.singleThread = singleThread;
+    }
+
+    /**
+     * @return the max count of received messages of an Association waiting for the worker executors
+     */
+    public int getWorkerQueueMaxMessages() {
+        return workerQueueMaxMessages;
+    }
+
+    /**
+     * @param workerQueueMaxMessages the max count of received messages of an Association waiting for the worker
+     *        executors when the stack is not in single thread mode. Reading of the channel is paused when it is reached
+     *        and resumed when the half of it is delivered
+     */
+    public void setWorkerQueueMaxMessages(int workerQueueMaxMessages) throws Exception {
+        if (workerQueueMaxMessages < 1)
+            throw new Exception("WorkerQueueMaxMessages must be greater than 0");
+
+        this.workerQueueMaxMessages = workerQueueMaxMessages;
+    }
+
+    /**
+     * @return the worker executor delivering the received messages of the stream, null in single thread mode
+     */
+    protected EventExecutor getWorkerExecutor(NettyAssociationImpl association, int streamNumber) {
+        EventExecutor[] executors = this.workerExecutors;
+        if (executors == null)
+            return null;
+
+        // anonymous Associations have no name
+        int hash = System.identityHashCode(association) * 31 + streamNumber;
+        return executors[(hash & 0x7fffffff) % executors.length];
     }
 
     @Override
@@ -1343,6 +1985,27 @@ public class NettySctpManagementImpl implements Management {
                 // this.singleThread = reader.read(SINGLE_THREAD_PROP, Boolean.class);
                 vali = reader.read(WORKER_THREADS_PROP, Integer.class);
                 Boolean valb = reader.read(SINGLE_THREAD_PROP, Boolean.class);
+                vali = reader.read(BOSS_GROUP_THREAD_COUNT_PROP, Integer.class);
+                if (vali != null && !this.updatedStartOptions.contains(BOSS_GROUP_THREAD_COUNT_PROP))
+                    this.bossGroupThreadCount = vali;
+                vali = reader.read(WORKER_GROUP_THREAD_COUNT_PROP, Integer.class);
+                if (vali != null && !this.updatedStartOptions.contains(WORKER_GROUP_THREAD_COUNT_PROP))
+                    this.workerGroupThreadCount = vali;
+                String vals = reader.read(TCP_TRANSPORT_PROP, String.class);
+                if (vals != null && !this.updatedStartOptions.contains(TCP_TRANSPORT_PROP))
+                    this.tcpTransport = NettyTcpTransport.valueOf(vals);
+                valb = reader.read(OPTION_TCP_EPOLL_EDGE_TRIGGERED_PROP, Boolean.class);
+                if (valb != null && !this.updatedStartOptions.contains(OPTION_TCP_EPOLL_EDGE_TRIGGERED_PROP))
+                    this.optionTcpEpollEdgeTriggered = valb;
+                valb = reader.read(OPTION_SO_REUSEPORT_PROP, Boolean.class);
+                if (valb != null && !this.updatedStartOptions.contains(OPTION_SO_REUSEPORT_PROP))
+                    this.optionSoReuseport = valb;
+                vali = reader.read(TCP_SERVER_ACCEPTOR_COUNT_PROP, Integer.class);
+                if (vali != null && !this.updatedStartOptions.contains(TCP_SERVER_ACCEPTOR_COUNT_PROP))
+                    this.tcpServerAcceptorCount = vali;
+                vali = reader.read(OPTION_SO_BACKLOG_PROP, Integer.class);
+                if (vali != null && !this.updatedStartOptions.contains(OPTION_SO_BACKLOG_PROP))
+                    this.optionSoBacklog = vali;
             } catch (java.lang.NullPointerException npe) {
                 // ignore.
                 // For backward compatibility we can ignore if these values are not defined
@@ -1365,6 +2028,24 @@ public class NettySctpManagementImpl implements Management {
                 this.congControl_BackToNormalDelayThreshold[2] = valTB3;
             }
 
+            int[] valWT = new int[3];
+            int[] valWB = new int[3];
+            boolean valWFound = true;
+            for (int i = 0; i < 3; i++) {
+                Integer valT = reader.read(CONG_CONTROL_WRITE_BUFFER_THRESHOLD + (i + 1), Integer.class);
+                Integer valB = reader.read(CONG_CONTROL_BACK_TO_NORMAL_WRITE_BUFFER_THRESHOLD + (i + 1), Integer.class);
+                if (valT == null || valB == null) {
+                    valWFound = false;
+                    break;
+                }
+                valWT[i] = valT;
+                valWB[i] = valB;
+            }
+            if (valWFound) {
+                this.congControl_WriteBufferThreshold = valWT;
+                this.congControl_BackToNormalWriteBufferThreshold = valWB;
+            }
+
             // TODO: add storing of parameters
 //            Boolean valB = reader.read(OPTION_SCTP_DISABLE_FRAGMENTS, Boolean.class);
 //            if (valB != null)
@@ -1395,20 +2076,15 @@ public class NettySctpManagementImpl implements Management {
             for (FastList.Node<Server> n = this.servers.head(), end = this.servers.tail(); (n = n.getNext()) != end;) {
                 Server serverTemp = n.getValue();
                 ((NettyServerImpl) serverTemp).setManagement(this);
-                if (serverTemp.isStarted()) {
-                    try {
-                        ((NettyServerImpl) serverTemp).start();
-                    } catch (Exception e) {
-                        logger.error(String.format("Error while initiating Server=%s", serverTemp.getName()), e);
-                    }
-                }
             }
 
             this.associations = reader.read(ASSOCIATIONS, AssociationMap.class);
+            this.peerAssociationIndex.clear();
             for (FastMap.Entry<String, Association> n = this.associations.head(), end = this.associations.tail(); (n = n
                     .getNext()) != end;) {
                 NettyAssociationImpl associationTemp = (NettyAssociationImpl) n.getValue();
                 associationTemp.setManagement(this);
+                this.peerAssociationIndex.add(associationTemp);
             }
 
         } catch (XMLStreamException ex) {
@@ -1428,6 +2104,13 @@ public class NettySctpManagementImpl implements Management {
             writer.write(this.connectDelay, CONNECT_DELAY_PROP, Integer.class);
             // writer.write(this.workerThreads, WORKER_THREADS_PROP, Integer.class);
             // writer.write(this.singleThread, SINGLE_THREAD_PROP, Boolean.class);
+            writer.write(this.bossGroupThreadCount, BOSS_GROUP_THREAD_COUNT_PROP, Integer.class);
+            writer.write(this.workerGroupThreadCount, WORKER_GROUP_THREAD_COUNT_PROP, Integer.class);
+            writer.write(this.tcpTransport.name(), TCP_TRANSPORT_PROP, String.class);
+            writer.write(this.optionTcpEpollEdgeTriggered, OPTION_TCP_EPOLL_EDGE_TRIGGERED_PROP, Boolean.class);
+            writer.write(this.optionSoReuseport, OPTION_SO_REUSEPORT_PROP, Boolean.class);
+            writer.write(this.tcpServerAcceptorCount, TCP_SERVER_ACCEPTOR_COUNT_PROP, Integer.class);
+            writer.write(this.optionSoBacklog, OPTION_SO_BACKLOG_PROP, Integer.class);
 
             if (this.congControl_DelayThreshold != null && this.congControl_DelayThreshold.length == 3) {
                 writer.write(this.congControl_DelayThreshold[0], CONG_CONTROL_DELAY_THRESHOLD_1, Double.class);
@@ -1440,6 +2123,13 @@ public class NettySctpManagementImpl implements Management {
                 writer.write(this.congControl_BackToNormalDelayThreshold[2], CONG_CONTROL_BACK_TO_NORMAL_DELAY_THRESHOLD_3, Double.class);
             }
 
+            for (int i = 0; i < 3; i++) {
+                writer.write(this.congControl_WriteBufferThreshold[i], CONG_CONTROL_WRITE_BUFFER_THRESHOLD + (i + 1),
+                        Integer.class);
+                writer.write(this.congControl_BackToNormalWriteBufferThreshold[i],
+                        CONG_CONTROL_BACK_TO_NORMAL_WRITE_BUFFER_THRESHOLD + (i + 1), Integer.class);
+            }
+
             // TODO: add storing of parameters
 //            if (this.optionSctpDisableFragments != null) {
 //                writer.write(this.optionSctpDisableFragments, OPTION_SCTP_DISABLE_FRAGMENTS, Boolean.class);
@@ -0,0 +1,85 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.sctp.SctpMessage;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+
+import org.mobicents.protocols.sctp.SctpReassembler;
+
+/**
+ * Replaces SctpMessageCompletionHandler: reassembles SCTP messages received in parts with a SctpReassembler, so the
+ * bytes pending reassembly are capped per stream and per channel.
+ */
+public class NettySctpReassemblyHandler extends MessageToMessageDecoder<SctpMessage> {
+
+    private final String name;
+    private final int maxStreamBytes;
+    private final int maxAssociationBytes;
+
+    private SctpReassembler reassembler;
+
+    /**
+     * @param name the Association or Server name, for logging
+     * @param maxStreamBytes max size of a reassembled message
+     * @param maxAssociationBytes max bytes pending reassembly on all streams of the channel
+     */
+    public NettySctpReassemblyHandler(String name, int maxStreamBytes, int maxAssociationBytes) {
+        this.name = name;
+        this.maxStreamBytes = maxStreamBytes;
+        this.maxAssociationBytes = maxAssociationBytes;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.reassembler = new SctpReassembler(this.name, ctx.alloc(), this.maxStreamBytes, this.maxAssociationBytes);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, SctpMessage msg, List<Object> out) throws Exception {
+        ByteBuf message = this.reassembler.reassemble(msg.streamIdentifier(), msg.content().retain(), msg.isComplete());
+        if (message != null) {
+            out.add(new SctpMessage(msg.protocolIdentifier(), msg.streamIdentifier(), msg.isUnordered(), message));
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        this.reassembler.release();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        this.reassembler.release();
+    }
+
+    /**
+     * @return count of messages dropped as they exceeded the reassembly limits
+     */
+    public long getDroppedMessages() {
+        return this.reassembler.getDroppedMessages();
+    }
+}
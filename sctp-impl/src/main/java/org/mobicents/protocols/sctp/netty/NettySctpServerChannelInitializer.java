@@ -22,7 +22,6 @@ package org.mobicents.protocols.sctp.netty;
 
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.sctp.SctpChannel;
-import io.netty.handler.codec.sctp.SctpMessageCompletionHandler;
 
 /**
  * @author <a href="mailto:amit.bhayani@telestax.com">Amit Bhayani</a>
@@ -40,7 +39,9 @@ public class NettySctpServerChannelInitializer extends ChannelInitializer<SctpCh
 
     @Override
     protected void initChannel(SctpChannel ch) throws Exception {
-        ch.pipeline().addLast(new SctpMessageCompletionHandler(),
+        ch.pipeline().addLast(
+                new NettySctpReassemblyHandler(this.nettyServerImpl.getName(), this.sctpManagementImpl.getReassemblyMaxStreamBytes(),
+                        this.sctpManagementImpl.getReassemblyMaxAssociationBytes()),
                 new NettySctpServerHandler(this.nettyServerImpl, this.sctpManagementImpl));
     }
 
@@ -25,11 +25,7 @@ import io.netty.channel.ChannelHandlerContext;
 
 import java.net.InetSocketAddress;
 
-import javolution.util.FastMap;
-
 import org.apache.log4j.Logger;
-import org.mobicents.protocols.api.Association;
-import org.mobicents.protocols.api.AssociationType;
 import org.mobicents.protocols.api.IpChannelType;
 
 /**
@@ -76,46 +72,33 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
             logger.debug(String.format("Received connect request from peer host=%s port=%d", host, port));
         }
 
-        // Iterate through all corresponding associate to
-        // check if incoming connection request matches with any provisioned
+        // Look up the Association provisioned for this server and remote
         // ip:port
-        FastMap<String, Association> associations = this.managementImpl.associations;
-        for (FastMap.Entry<String, Association> n = associations.head(), end = associations.tail(); (n = n.getNext()) != end
-                && !provisioned;) {
-            NettyAssociationImpl association = (NettyAssociationImpl) n.getValue();
-
-            // check if an association binds to the found server
-            if (serverImpl.getName().equals(association.getServerName())
-                    && association.getAssociationType() == AssociationType.SERVER) {
-                // compare port and ip of remote with provisioned
-                if ((port == association.getPeerPort()) && (host.equals(association.getPeerAddress()))) {
-                    provisioned = true;
-
-                    if (!association.isStarted()) {
-                        logger.error(String.format(
-                                "Received connect request for Association=%s but not started yet. Droping the connection!",
-                                association.getName()));
-                        channel.close();
-                        return;
-                    }
-
-                    this.association = association;
-                    this.channel = channel;
-                    this.ctx = ctx;
-                    this.association.setChannelHandler(this);
-
-                    if (logger.isInfoEnabled()) {
-                        logger.info(String.format("Connected %s", association));
-                    }
-
-                    if (association.getIpChannelType() == IpChannelType.TCP) {
-                        this.association.markAssociationUp(1, 1);
-                    }
-
-                    break;
-                }
+        NettyAssociationImpl serverAssociation = this.managementImpl.peerAssociationIndex.find(serverImpl.getName(), host, port);
+        if (serverAssociation != null) {
+            provisioned = true;
+
+            if (!serverAssociation.isStarted()) {
+                logger.error(String.format(
+                        "Received connect request for Association=%s but not started yet. Droping the connection!",
+                        serverAssociation.getName()));
+                channel.close();
+                return;
+            }
+
+            this.association = serverAssociation;
+            this.channel = channel;
+            this.ctx = ctx;
+            this.association.setChannelHandler(this);
+
+            if (logger.isInfoEnabled()) {
+                logger.info(String.format("Connected %s", serverAssociation));
             }
-        }// for loop
+
+            if (serverAssociation.getIpChannelType() == IpChannelType.TCP) {
+                this.association.markAssociationUp(1, 1);
+            }
+        }
 
         if (!provisioned && serverImpl.isAcceptAnonymousConnections() && this.managementImpl.getServerListener() != null) {
             // the server accepts anonymous connections
@@ -185,8 +168,7 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         // Close the connection when an exception is raised.
-        logger.error("ExceptionCaught for Associtaion: " + this.association.getName() + "\n", cause);
-        ctx.close();
+        this.handleException(ctx, cause);
     }
 
 }
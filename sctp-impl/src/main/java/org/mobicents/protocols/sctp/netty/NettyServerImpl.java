@@ -27,7 +27,7 @@ import io.netty.channel.ServerChannel;
 import io.netty.channel.sctp.SctpChannelOption;
 import io.netty.channel.sctp.SctpServerChannel;
 import io.netty.channel.sctp.nio.NioSctpServerChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
@@ -85,7 +85,9 @@ public class NettyServerImpl implements Server {
     // Netty declarations
     // The channel on which we'll accept connections
     private SctpServerChannel serverChannelSctp;
-    private NioServerSocketChannel serverChannelTcp;
+    private ServerSocketChannel serverChannelTcp;
+    // further SO_REUSEPORT listening channels of a TCP Server, null if only one is bound
+    private ServerSocketChannel[] extraServerChannelsTcp;
 
     /**
      * 
@@ -279,21 +281,41 @@ public class NettyServerImpl implements Server {
                 logger.warn(String.format("Error while stopping the Server=%s", this.name), e);
             }
         }
+        this.closeExtraServerChannels();
+    }
+
+    private void closeExtraServerChannels() {
+        if (this.extraServerChannelsTcp == null)
+            return;
+
+        for (ServerSocketChannel channel : this.extraServerChannelsTcp) {
+            if (channel != null) {
+                try {
+                    channel.close().sync();
+                } catch (Exception e) {
+                    logger.warn(String.format("Error while stopping the Server=%s", this.name), e);
+                }
+            }
+        }
+        this.extraServerChannelsTcp = null;
     }
 
     private void initSocket() throws Exception {
         ServerBootstrap b = new ServerBootstrap();
-        b.group(this.management.getBossGroup(), this.management.getWorkerGroup());
         if (this.ipChannelType == IpChannelType.SCTP) {
+            b.group(this.management.getBossGroup(), this.management.getWorkerGroup());
             b.channel(NioSctpServerChannel.class);
-            b.option(ChannelOption.SO_BACKLOG, 100);
+            b.option(ChannelOption.SO_BACKLOG, this.management.getOptionSoBacklog());
             b.childHandler(new NettySctpServerChannelInitializer(this, this.management));
             this.applySctpOptions(b);
         } else {
-            b.channel(NioServerSocketChannel.class);
-            b.option(ChannelOption.SO_BACKLOG, 100);
+            b.group(this.management.getTcpBossGroup(), this.management.getTcpWorkerGroup());
+            b.channel(this.management.getTcpServerChannelClass());
+            b.option(ChannelOption.SO_BACKLOG, this.management.getOptionSoBacklog());
+            this.management.applyTcpOptions(b);
             b.childHandler(new NettyTcpServerChannelInitializer(this, this.management));
         }
+        this.management.applyWriteBufferWaterMarks(b);
         b.handler(new LoggingHandler(LogLevel.INFO));
 
         InetSocketAddress localAddress = new InetSocketAddress(this.hostAddress, this.hostport);
@@ -321,10 +343,30 @@ public class NettyServerImpl implements Server {
                 logger.info(String.format("SctpServerChannel bound to=%s ", this.serverChannelSctp.allLocalAddresses()));
             }
         } else {
-            this.serverChannelTcp = (NioServerSocketChannel) channelFuture.channel();
+            this.serverChannelTcp = (ServerSocketChannel) channelFuture.channel();
+
+            // Further listeners on the same address. The kernel spreads the incoming connections over them and each one
+            // accepts on its own EventLoop of the boss group
+            int acceptorCount = this.management.getActiveTcpServerAcceptorCount();
+            if (acceptorCount > 1) {
+                this.extraServerChannelsTcp = new ServerSocketChannel[acceptorCount - 1];
+                try {
+                    for (int i = 0; i < this.extraServerChannelsTcp.length; i++) {
+                        this.extraServerChannelsTcp[i] = (ServerSocketChannel) b.bind(localAddress).sync().channel();
+                    }
+                } catch (Exception e) {
+                    this.closeExtraServerChannels();
+                    this.serverChannelTcp.close().sync();
+                    throw e;
+                }
+            } else if (this.management.getTcpServerAcceptorCount() > 1) {
+                logger.warn(String.format("Server=%s binds a single listening channel, multiple acceptors need the epoll transport",
+                        this.name));
+            }
 
             if (logger.isInfoEnabled()) {
-                logger.info(String.format("ServerSocketChannel bound to=%s ", this.serverChannelTcp.localAddress()));
+                logger.info(String.format("ServerSocketChannel bound to=%s, acceptors=%d", this.serverChannelTcp.localAddress(),
+                        acceptorCount));
             }
         }
     }
@@ -23,6 +23,8 @@ package org.mobicents.protocols.sctp.netty;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 
+import org.mobicents.protocols.sctp.MessageFramer;
+
 /**
  * @author <a href="mailto:amit.bhayani@telestax.com">Amit Bhayani</a>
  * @author Sergey Vetyutnev</a>
@@ -42,6 +44,10 @@ public class NettyTcpClientChannelInitializer extends ChannelInitializer<SocketC
 
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
+        MessageFramer messageFramer = this.nettyAssociationImpl.getManagement().getMessageFramer();
+        if (messageFramer != null) {
+            ch.pipeline().addLast(new NettyMessageFramerDecoder(messageFramer));
+        }
         ch.pipeline().addLast(new NettySctpClientHandler(this.nettyAssociationImpl));
 
     }
@@ -23,6 +23,8 @@ package org.mobicents.protocols.sctp.netty;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 
+import org.mobicents.protocols.sctp.MessageFramer;
+
 /**
  * @author <a href="mailto:amit.bhayani@telestax.com">Amit Bhayani</a>
  * @author Sergey Vetyutnev</a>
@@ -40,6 +42,10 @@ public class NettyTcpServerChannelInitializer extends ChannelInitializer<SocketC
 
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
+        MessageFramer messageFramer = this.sctpManagementImpl.getMessageFramer();
+        if (messageFramer != null) {
+            ch.pipeline().addLast(new NettyMessageFramerDecoder(messageFramer));
+        }
         ch.pipeline().addLast(new NettySctpServerHandler(this.nettyServerImpl, this.sctpManagementImpl));
     }
 }
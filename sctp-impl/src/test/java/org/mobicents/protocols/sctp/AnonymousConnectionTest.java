@@ -94,18 +94,21 @@ public class AnonymousConnectionTest implements ServerListener {
 		this.management.setSingleThread(true);
 		this.management.start();
         this.management.setConnectDelay(CONNECT_DELAY);// Try connecting every x secs
+        this.management.setReconnectPolicy(new FixedDelayReconnectPolicy());
 		this.management.removeAllResourses();
 
 		this.management2 = new ManagementImpl("server-management2");
 		this.management2.setSingleThread(true);
 		this.management2.start();
         this.management2.setConnectDelay(CONNECT_DELAY);// Try connecting every x secs
+        this.management2.setReconnectPolicy(new FixedDelayReconnectPolicy());
 		this.management2.removeAllResourses();
 
 		this.management3 = new ManagementImpl("server-management3");
 		this.management3.setSingleThread(true);
 		this.management3.start();
         this.management3.setConnectDelay(CONNECT_DELAY);// Try connecting every x secs
+        this.management3.setReconnectPolicy(new FixedDelayReconnectPolicy());
 		this.management3.removeAllResourses();
 
 		this.server = this.management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT, ipChannelType, true, 2, null);
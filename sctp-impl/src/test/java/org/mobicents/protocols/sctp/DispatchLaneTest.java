@@ -0,0 +1,231 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the ring based DispatchLane used when the stack is not in single
+ * thread mode
+ * 
+ */
+public class DispatchLaneTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int MESSAGES = 20000;
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testOrderBlocking() throws Exception {
+		this.testOrder(WaitStrategy.BLOCKING);
+	}
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testOrderYielding() throws Exception {
+		this.testOrder(WaitStrategy.YIELDING);
+	}
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testOrderBusySpin() throws Exception {
+		this.testOrder(WaitStrategy.BUSY_SPIN);
+	}
+
+	/**
+	 * Several SelectorThreads publish into a small ring, each Association must
+	 * see its messages in the published order
+	 */
+	private void testOrder(WaitStrategy waitStrategy) throws Exception {
+		final DispatchLane lane = new DispatchLane("DispatchLaneTest", 64, waitStrategy);
+		lane.start();
+
+		final CountDownLatch done = new CountDownLatch(PRODUCERS);
+		final AtomicInteger errors = new AtomicInteger();
+
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; i++) {
+			final AssociationImpl association = new AssociationImpl();
+			association.setAssociationListener(new OrderListener(done, errors));
+			producers[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < MESSAGES; j++) {
+						lane.publish(association, createPayload(j));
+					}
+				}
+			};
+			producers[i].start();
+		}
+
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertEquals(0, errors.get());
+		assertEquals(0, lane.size());
+
+		lane.stop(5000);
+		assertFalse(lane.publish(new AssociationImpl(), createPayload(0)));
+	}
+
+	/**
+	 * Messages published before stop() are still delivered
+	 */
+	@Test(groups = { "functional", "dispatch" })
+	public void testStopDelivers() throws Exception {
+		DispatchLane lane = new DispatchLane("DispatchLaneTest", 16, WaitStrategy.BLOCKING);
+
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicInteger errors = new AtomicInteger();
+		AssociationImpl association = new AssociationImpl();
+		association.setAssociationListener(new OrderListener(done, errors, 10));
+
+		lane.start();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(lane.publish(association, createPayload(i)));
+		}
+		lane.stop(5000);
+
+		assertEquals(0, done.getCount());
+		assertEquals(0, errors.get());
+	}
+
+	/**
+	 * Messages of the previous connection still queued when the Association
+	 * comes up again must not unbalance the in flight count of the new one,
+	 * otherwise its streams could never be moved
+	 */
+	@Test(groups = { "functional", "dispatch" })
+	public void testReconnectInFlight() throws Exception {
+		ManagementImpl management = new ManagementImpl("DispatchLaneTestReconnect");
+		management.setSingleThread(false);
+		management.setWorkerThreads(2);
+		management.setWorkerMappingPolicy(new RoundRobinWorkerMappingPolicy());
+		management.start();
+		management.removeAllResourses();
+
+		try {
+			final CountDownLatch release = new CountDownLatch(1);
+			final AtomicInteger delivered = new AtomicInteger();
+			AssociationImpl association = new AssociationImpl("127.0.0.1", 2905, "server", "a1", IpChannelType.TCP);
+			association.setManagement(management);
+			association.setAssociationListener(new OrderListener(new CountDownLatch(0), new AtomicInteger()) {
+				@Override
+				public void onPayload(Association association, PayloadData payloadData) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+					}
+					delivered.incrementAndGet();
+				}
+			});
+
+			// stream 0 is on lane 0, stream 1 on lane 1
+			association.createworkerThreadTable(2);
+			association.deliver(new PayloadData(1, new byte[1], true, false, 0, 0));
+			association.deliver(new PayloadData(1, new byte[1], true, false, 0, 0));
+			assertEquals(2, association.getStreamInFlight(0));
+
+			// the Association comes up again with the messages still queued
+			association.createworkerThreadTable(2);
+			assertEquals(0, association.getStreamInFlight(0));
+			release.countDown();
+			for (int i = 0; i < 100 && delivered.get() != 2; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, delivered.get());
+			assertEquals(0, association.getStreamInFlight(0));
+
+			// so the stream can still be moved
+			association.requestStreamMove(0, 1);
+			association.deliver(new PayloadData(1, new byte[1], true, false, 0, 0));
+			assertEquals(1, association.getWorkerThreadTable().get(0));
+			association.releaseWorkerThreadTable();
+		} finally {
+			management.stop();
+		}
+	}
+
+	private static PayloadData createPayload(int id) {
+		byte[] data = new byte[4];
+		data[0] = (byte) (id >> 24);
+		data[1] = (byte) (id >> 16);
+		data[2] = (byte) (id >> 8);
+		data[3] = (byte) id;
+		return new PayloadData(4, data, true, false, 0, 0);
+	}
+
+	private class OrderListener implements AssociationListener {
+
+		private final CountDownLatch done;
+		private final AtomicInteger errors;
+		private final int expected;
+		private int next = 0;
+
+		OrderListener(CountDownLatch done, AtomicInteger errors) {
+			this(done, errors, MESSAGES);
+		}
+
+		OrderListener(CountDownLatch done, AtomicInteger errors, int expected) {
+			this.done = done;
+			this.errors = errors;
+			this.expected = expected;
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			if (payloadData.getByteBuf().getInt(0) != this.next)
+				this.errors.incrementAndGet();
+			this.next++;
+			if (this.next == this.expected)
+				this.done.countDown();
+		}
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012.
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Rate of accepting TCP connections against many provisioned server
+ * Associations. Not a part of the functional suite, run it with the
+ * "performance" group. The count of Associations is taken from the
+ * sctp.bench.associations system property.
+ */
+public class PeerAssociationIndexBenchmark {
+
+	private static final Logger logger = Logger.getLogger(PeerAssociationIndexBenchmark.class);
+
+	private static final String SERVER_NAME = "benchmarkserver";
+	private static final String HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 2351;
+	private static final int FIRST_PEER_PORT = 21000;
+
+	private Level stackLogLevel;
+
+	@BeforeClass(alwaysRun = true)
+	public void setUpClass() throws Exception {
+		// logging of each accepted connection would be measured otherwise
+		Logger stackLogger = Logger.getLogger("org.mobicents.protocols.sctp");
+		this.stackLogLevel = stackLogger.getLevel();
+		stackLogger.setLevel(Level.INFO);
+	}
+
+	@AfterClass(alwaysRun = true)
+	public void tearDownClass() throws Exception {
+		Logger.getLogger("org.mobicents.protocols.sctp").setLevel(this.stackLogLevel);
+	}
+
+	@Test(groups = { "performance", "tcp" })
+	public void testAccept() throws Exception {
+		int count = Integer.getInteger("sctp.bench.associations", 2000);
+
+		ManagementImpl management = new ManagementImpl("accept-benchmark");
+		management.start();
+		management.removeAllResourses();
+		Socket[] sockets = new Socket[count];
+		try {
+			management.addServer(SERVER_NAME, HOST, SERVER_PORT, IpChannelType.TCP, false, 0, null);
+			management.startServer(SERVER_NAME);
+
+			CountDownLatch up = new CountDownLatch(count);
+			for (int i = 0; i < count; i++) {
+				String assocName = "benchmark-" + i;
+				Association association = management.addServerAssociation(HOST, FIRST_PEER_PORT + i, SERVER_NAME, assocName,
+						IpChannelType.TCP);
+				association.setAssociationListener(new UpListener(up));
+				management.startAssociation(assocName);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				sockets[i] = new Socket();
+				sockets[i].setReuseAddress(true);
+				sockets[i].bind(new InetSocketAddress(HOST, FIRST_PEER_PORT + i));
+				sockets[i].connect(new InetSocketAddress(HOST, SERVER_PORT));
+			}
+			boolean allUp = up.await(60, TimeUnit.SECONDS);
+			long time = System.nanoTime() - start;
+
+			logger.info(String.format("Accepted %d connections against %d Associations in %d ms, %.1f accepts/s",
+					count - up.getCount(), count, time / 1000000, (count - up.getCount()) * 1e9 / time));
+			assertTrue(allUp);
+		} finally {
+			for (Socket socket : sockets) {
+				if (socket != null)
+					socket.close();
+			}
+			management.removeAllResourses();
+			management.stop();
+		}
+	}
+
+	private class UpListener implements AssociationListener {
+
+		private final CountDownLatch up;
+
+		UpListener(CountDownLatch up) {
+			this.up = up;
+		}
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			this.up.countDown();
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.mobicents.protocols.api.IpChannelType;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the index matching incoming connections with provisioned
+ * Associations
+ * 
+ */
+public class PeerAssociationIndexTest {
+
+	private static final String SERVER_NAME = "testserver";
+	private static final String HOST = "127.0.0.1";
+
+	@Test(groups = { "functional", "accept" })
+	public void testFind() throws Exception {
+		PeerAssociationIndex<AssociationImpl> index = new PeerAssociationIndex<AssociationImpl>();
+
+		AssociationImpl a1 = new AssociationImpl(HOST, 3000, SERVER_NAME, "a1", IpChannelType.TCP);
+		AssociationImpl a2 = new AssociationImpl(HOST, 3001, SERVER_NAME, "a2", IpChannelType.TCP);
+		AssociationImpl a3 = new AssociationImpl(HOST, 3000, "otherserver", "a3", IpChannelType.TCP);
+		AssociationImpl client = new AssociationImpl(HOST, 3002, HOST, 3003, "client", IpChannelType.TCP, null);
+		index.add(a1);
+		index.add(a2);
+		index.add(a3);
+		index.add(client);
+
+		assertEquals(3, index.size());
+		assertSame(a1, index.find(SERVER_NAME, HOST, 3000));
+		assertSame(a2, index.find(SERVER_NAME, HOST, 3001));
+		assertSame(a3, index.find("otherserver", HOST, 3000));
+		assertNull(index.find(SERVER_NAME, HOST, 3002));
+		assertNull(index.find(SERVER_NAME, "127.0.0.2", 3000));
+
+		index.remove(a1);
+		assertNull(index.find(SERVER_NAME, HOST, 3000));
+		assertSame(a3, index.find("otherserver", HOST, 3000));
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the delays of the reconnect policies
+ * 
+ */
+public class ReconnectPolicyTest {
+
+	@Test(groups = { "functional", "reconnect" })
+	public void testExponentialBackoff() throws Exception {
+		ExponentialBackoffReconnectPolicy policy = new ExponentialBackoffReconnectPolicy(30000, 2, 0);
+
+		assertEquals(0, policy.getReconnectDelay(0, 1000));
+		assertEquals(1000, policy.getReconnectDelay(1, 1000));
+		assertEquals(2000, policy.getReconnectDelay(2, 1000));
+		assertEquals(16000, policy.getReconnectDelay(5, 1000));
+		assertEquals(30000, policy.getReconnectDelay(6, 1000));
+		assertEquals(30000, policy.getReconnectDelay(1000, 1000));
+	}
+
+	@Test(groups = { "functional", "reconnect" })
+	public void testJitter() throws Exception {
+		ExponentialBackoffReconnectPolicy policy = new ExponentialBackoffReconnectPolicy(30000, 2, 0.2);
+
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (int i = 0; i < 1000; i++) {
+			long delay = policy.getReconnectDelay(3, 1000);
+			assertTrue(delay >= 3200 && delay <= 4800);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		// the delays are spread, not in lockstep
+		assertTrue(max - min > 800);
+
+		assertEquals(0, policy.getReconnectDelay(0, 1000));
+	}
+
+	@Test(groups = { "functional", "reconnect" })
+	public void testFixedDelay() throws Exception {
+		FixedDelayReconnectPolicy policy = new FixedDelayReconnectPolicy();
+
+		assertEquals(5000, policy.getReconnectDelay(0, 5000));
+		assertEquals(5000, policy.getReconnectDelay(10, 5000));
+	}
+}
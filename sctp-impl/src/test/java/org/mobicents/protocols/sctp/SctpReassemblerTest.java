@@ -0,0 +1,127 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the reassembly of SCTP messages received in parts
+ * 
+ */
+public class SctpReassemblerTest {
+
+	private ByteBuf part(int len, int value) {
+		byte[] data = new byte[len];
+		Arrays.fill(data, (byte) value);
+		return Unpooled.wrappedBuffer(data);
+	}
+
+	private byte[] toArray(ByteBuf buf) {
+		byte[] data = new byte[buf.readableBytes()];
+		buf.getBytes(buf.readerIndex(), data);
+		return data;
+	}
+
+	@Test(groups = { "functional", "reassembly" })
+	public void testReassemble() throws Exception {
+		SctpReassembler reassembler = new SctpReassembler("test", PooledByteBufAllocator.DEFAULT, 1000, 1500);
+
+		// a whole message is passed as it is
+		ByteBuf whole = this.part(10, 1);
+		assertSame(whole, reassembler.reassemble(0, whole, true));
+
+		// parts of two streams interleaved
+		assertNull(reassembler.reassemble(1, this.part(100, 1), false));
+		assertNull(reassembler.reassemble(2, this.part(50, 2), false));
+		assertNull(reassembler.reassemble(1, this.part(100, 1), false));
+		assertEquals(250, reassembler.getPendingBytes());
+
+		ByteBuf message = reassembler.reassemble(1, this.part(10, 1), true);
+		assertEquals(210, message.readableBytes());
+		byte[] expected = new byte[210];
+		Arrays.fill(expected, (byte) 1);
+		assertTrue(Arrays.equals(expected, this.toArray(message)));
+		message.release();
+
+		message = reassembler.reassemble(2, this.part(50, 2), true);
+		assertEquals(100, message.readableBytes());
+		message.release();
+		assertEquals(0, reassembler.getPendingBytes());
+	}
+
+	@Test(groups = { "functional", "reassembly" })
+	public void testStreamLimit() throws Exception {
+		SctpReassembler reassembler = new SctpReassembler("test", PooledByteBufAllocator.DEFAULT, 1000, 10000);
+
+		ByteBuf first = this.part(600, 1);
+		assertNull(reassembler.reassemble(1, first, false));
+		ByteBuf second = this.part(600, 1);
+		// exceeds the stream limit, the message is dropped
+		assertNull(reassembler.reassemble(1, second, false));
+		assertEquals(0, first.refCnt());
+		assertEquals(0, second.refCnt());
+		assertEquals(0, reassembler.getPendingBytes());
+		assertEquals(1, reassembler.getDroppedMessages());
+
+		// the rest of the dropped message is discarded
+		assertNull(reassembler.reassemble(1, this.part(100, 1), false));
+		assertNull(reassembler.reassemble(1, this.part(100, 1), true));
+
+		// the next message goes through
+		ByteBuf message = reassembler.reassemble(1, this.part(100, 3), false);
+		assertNull(message);
+		message = reassembler.reassemble(1, this.part(100, 3), true);
+		assertEquals(200, message.readableBytes());
+		message.release();
+	}
+
+	@Test(groups = { "functional", "reassembly" })
+	public void testAssociationLimit() throws Exception {
+		SctpReassembler reassembler = new SctpReassembler("test", PooledByteBufAllocator.DEFAULT, 1000, 1000);
+
+		assertNull(reassembler.reassemble(1, this.part(400, 1), false));
+		assertNull(reassembler.reassemble(2, this.part(400, 2), false));
+		// stream 3 would exceed the association limit
+		assertNull(reassembler.reassemble(3, this.part(400, 3), false));
+		assertEquals(800, reassembler.getPendingBytes());
+		assertNull(reassembler.reassemble(3, this.part(10, 3), true));
+
+		ByteBuf message = reassembler.reassemble(1, this.part(10, 1), true);
+		assertEquals(410, message.readableBytes());
+		message.release();
+
+		reassembler.release();
+		assertEquals(0, reassembler.getPendingBytes());
+	}
+}
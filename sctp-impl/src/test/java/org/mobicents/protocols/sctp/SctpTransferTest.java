@@ -85,6 +85,10 @@ public class SctpTransferTest {
 	}
 
 	public void setUp(IpChannelType ipChannelType) throws Exception {
+		this.setUp(ipChannelType, 1, false, true);
+	}
+
+	public void setUp(IpChannelType ipChannelType, int selectorThreadCount, boolean directSend, boolean singleThread) throws Exception {
 		this.clientMaxInboundStreams = 0;
 		this.serverMaxOutboundStreams = 0;
 		
@@ -98,7 +102,9 @@ public class SctpTransferTest {
 		this.serverMessage = null;
 
 		this.management = new ManagementImpl("server-management");
-		this.management.setSingleThread(true);
+		this.management.setSingleThread(singleThread);
+		this.management.setSelectorThreadCount(selectorThreadCount);
+		this.management.setDirectSend(directSend);
 		this.management.start();
         this.management.setConnectDelay(10000);// Try connecting every 10 secs
 		this.management.removeAllResourses();
@@ -143,9 +149,44 @@ public class SctpTransferTest {
 		this.testDataTransferByProtocol(IpChannelType.TCP);
 	}
 
+	/**
+	 * Same as testDataTransferTcp but with several selector shards, so the
+	 * Server and its Associations are served by different SelectorThreads
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testDataTransferTcpMultiSelector() throws Exception {
+
+		this.testDataTransferByProtocol(IpChannelType.TCP, 4, false, true);
+	}
+
+	/**
+	 * Same as testDataTransferTcp but messages are written from the calling
+	 * thread
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testDataTransferTcpDirectSend() throws Exception {
+
+		this.testDataTransferByProtocol(IpChannelType.TCP, 1, true, true);
+	}
+
+	/**
+	 * Same as testDataTransferTcp but listeners are called from DispatchLane
+	 * threads
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testDataTransferTcpDispatchLanes() throws Exception {
+
+		this.testDataTransferByProtocol(IpChannelType.TCP, 1, false, false);
+	}
+
 	private void testDataTransferByProtocol(IpChannelType ipChannelType) throws Exception {
+		this.testDataTransferByProtocol(ipChannelType, 1, false, true);
+	}
+
+	private void testDataTransferByProtocol(IpChannelType ipChannelType, int selectorThreadCount, boolean directSend,
+			boolean singleThread) throws Exception {
 
-		this.setUp(ipChannelType);
+		this.setUp(ipChannelType, selectorThreadCount, directSend, singleThread);
 
 		this.management.startServer(SERVER_NAME);
 
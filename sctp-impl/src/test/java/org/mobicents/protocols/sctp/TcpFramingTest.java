@@ -0,0 +1,182 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Sends a burst of M3UA messages of different sizes over a TCP Association
+ * with a SigtranMessageFramer and checks that each is received as one
+ * PayloadData
+ * 
+ */
+public class TcpFramingTest {
+
+	private static final String SERVER_NAME = "testserver";
+	private static final String SERVER_HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 2352;
+
+	private static final String SERVER_ASSOCIATION_NAME = "serverAssociation";
+	private static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+
+	private static final String CLIENT_HOST = "127.0.0.1";
+	private static final int CLIENT_PORT = 2353;
+
+	private static final int MESSAGES = 300;
+
+	private ManagementImpl management;
+
+	private volatile boolean clientAssocUp = false;
+	private final List<byte[]> received = new ArrayList<byte[]>();
+
+	/**
+	 * Creates a M3UA DATA message of the given total length, the body is
+	 * filled with the message number
+	 */
+	static byte[] createMessage(int length, int number) {
+		byte[] data = new byte[length];
+		data[0] = 1; // version
+		data[2] = 1; // Transfer Messages
+		data[3] = 1; // DATA
+		data[4] = (byte) (length >> 24);
+		data[5] = (byte) (length >> 16);
+		data[6] = (byte) (length >> 8);
+		data[7] = (byte) length;
+		Arrays.fill(data, 8, length, (byte) number);
+		return data;
+	}
+
+	static int getLength(int number) {
+		// from header only to longer than the receive buffer
+		return 8 + (number * 997) % 20000;
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testFraming() throws Exception {
+
+		this.management = new ManagementImpl("server-management");
+		this.management.setSingleThread(true);
+		this.management.setMessageFramer(new SigtranMessageFramer());
+		this.management.start();
+		this.management.removeAllResourses();
+
+		try {
+			this.management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT, IpChannelType.TCP, false, 0, null);
+			Association serverAssociation = this.management.addServerAssociation(CLIENT_HOST, CLIENT_PORT, SERVER_NAME,
+					SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+			Association clientAssociation = this.management.addAssociation(CLIENT_HOST, CLIENT_PORT, SERVER_HOST, SERVER_PORT,
+					CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+
+			this.management.startServer(SERVER_NAME);
+			serverAssociation.setAssociationListener(new FramingListener(false));
+			this.management.startAssociation(SERVER_ASSOCIATION_NAME);
+			clientAssociation.setAssociationListener(new FramingListener(true));
+			this.management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+			for (int i = 0; i < 100 && !this.clientAssocUp; i++) {
+				Thread.sleep(100);
+			}
+			assertTrue(this.clientAssocUp);
+
+			for (int i = 0; i < MESSAGES; i++) {
+				byte[] data = createMessage(getLength(i), i);
+				while (!clientAssociation.offer(new PayloadData(data.length, data, true, false, 3, 0))) {
+					Thread.sleep(1);
+				}
+			}
+
+			for (int i = 0; i < 100; i++) {
+				synchronized (this.received) {
+					if (this.received.size() >= MESSAGES)
+						break;
+				}
+				Thread.sleep(100);
+			}
+
+			synchronized (this.received) {
+				assertEquals(MESSAGES, this.received.size());
+				for (int i = 0; i < MESSAGES; i++) {
+					assertTrue(Arrays.equals(createMessage(getLength(i), i), this.received.get(i)));
+				}
+			}
+
+			this.management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+			this.management.stopAssociation(SERVER_ASSOCIATION_NAME);
+			this.management.stopServer(SERVER_NAME);
+		} finally {
+			this.management.removeAllResourses();
+			this.management.stop();
+		}
+	}
+
+	private class FramingListener implements AssociationListener {
+
+		private final boolean client;
+
+		FramingListener(boolean client) {
+			this.client = client;
+		}
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			if (this.client)
+				clientAssocUp = true;
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			byte[] data = payloadData.getData();
+			synchronized (received) {
+				received.add(data);
+			}
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}
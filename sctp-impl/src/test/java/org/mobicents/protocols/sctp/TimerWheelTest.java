@@ -0,0 +1,90 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the hashed timer wheel of the connect timers
+ * 
+ */
+public class TimerWheelTest {
+
+	@Test(groups = { "functional", "timer" })
+	public void testExpire() throws Exception {
+		TimerWheel<String> wheel = new TimerWheel<String>(8, 10, 1000);
+		List<String> expired = new ArrayList<String>();
+
+		wheel.schedule("a", 1025);
+		wheel.schedule("b", 1030);
+		// more than a lap ahead
+		wheel.schedule("c", 1200);
+		// already due
+		wheel.schedule("d", 900);
+		assertEquals(4, wheel.size());
+
+		assertEquals(1, wheel.expire(1005, expired));
+		assertEquals("d", expired.get(0));
+		expired.clear();
+
+		// expires at the first tick at or after its deadline
+		assertEquals(0, wheel.expire(1029, expired));
+		assertEquals(2, wheel.expire(1030, expired));
+		assertTrue(expired.contains("a"));
+		assertTrue(expired.contains("b"));
+		expired.clear();
+
+		// "c" shares its bucket with earlier ticks but waits for its lap
+		assertEquals(0, wheel.expire(1120, expired));
+		assertEquals(1, wheel.expire(1200, expired));
+		assertEquals("c", expired.get(0));
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test(groups = { "functional", "timer" })
+	public void testLongPause() throws Exception {
+		TimerWheel<Integer> wheel = new TimerWheel<Integer>(16, 10, 0);
+		List<Integer> expired = new ArrayList<Integer>();
+
+		for (int i = 0; i < 1000; i++) {
+			wheel.schedule(i, i * 7);
+		}
+
+		// several laps passed since the last expire
+		assertEquals(501, wheel.expire(3500, expired));
+		for (Integer task : expired) {
+			assertTrue(task * 7 <= 3500);
+		}
+		expired.clear();
+
+		assertEquals(499, wheel.expire(10000, expired));
+		assertTrue(wheel.isEmpty());
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the bounded Association transmit queue
+ * 
+ */
+public class TxQueueTest {
+
+	private PayloadData createPayload(int len, int id) {
+		byte[] data = new byte[len];
+		if (len >= 4) {
+			data[0] = (byte) (id >> 24);
+			data[1] = (byte) (id >> 16);
+			data[2] = (byte) (id >> 8);
+			data[3] = (byte) id;
+		}
+		return new PayloadData(len, data, true, false, 0, id % 16);
+	}
+
+	private int getId(ByteBuf byteBuf) {
+		return byteBuf.getInt(0);
+	}
+
+	@Test(groups = { "functional", "txqueue" })
+	public void testMessageLimit() throws Exception {
+		TxQueue queue = new TxQueue(3, 1000);
+
+		assertTrue(queue.isEmpty());
+		assertTrue(queue.offer(this.createPayload(10, 1)));
+		assertTrue(queue.offer(this.createPayload(10, 2)));
+		assertTrue(queue.offer(this.createPayload(10, 3)));
+		assertFalse(queue.offer(this.createPayload(10, 4)));
+		assertEquals(3, queue.size());
+		assertEquals(30, queue.getBytes());
+
+		assertEquals(1, this.getId(queue.poll()));
+		assertTrue(queue.offer(this.createPayload(10, 5)));
+
+		assertEquals(2, this.getId(queue.poll()));
+		assertEquals(3, this.getId(queue.poll()));
+		assertEquals(5, this.getId(queue.poll()));
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getBytes());
+	}
+
+	@Test(groups = { "functional", "txqueue" })
+	public void testByteLimit() throws Exception {
+		TxQueue queue = new TxQueue(100, 100);
+
+		assertTrue(queue.offer(this.createPayload(60, 1)));
+		assertFalse(queue.offer(this.createPayload(60, 2)));
+		assertTrue(queue.offer(this.createPayload(40, 3)));
+		assertFalse(queue.offer(this.createPayload(4, 4)));
+		assertEquals(100, queue.getBytes());
+
+		assertEquals(1, this.getId(queue.poll()));
+		assertEquals(3, this.getId(queue.poll()));
+		assertEquals(0, queue.getBytes());
+
+		// a message over the byte limit is still accepted into empty queue
+		assertTrue(queue.offer(this.createPayload(200, 5)));
+		assertFalse(queue.offer(this.createPayload(4, 6)));
+		assertEquals(5, this.getId(queue.poll()));
+	}
+
+	@Test(groups = { "functional", "txqueue" })
+	public void testMessageFields() throws Exception {
+		TxQueue queue = new TxQueue(4, 1000);
+
+		assertTrue(queue.offer(new PayloadData(4, new byte[4], false, true, 3, 7)));
+		assertTrue(queue.offer(Unpooled.wrappedBuffer(new byte[8]), 2, 5, true, false));
+
+		assertEquals(4, queue.poll().readableBytes());
+		assertEquals(7, queue.getLastPolledStreamNumber());
+		assertEquals(3, queue.getLastPolledPayloadProtocolId());
+		assertFalse(queue.isLastPolledComplete());
+		assertTrue(queue.isLastPolledUnordered());
+
+		assertEquals(8, queue.poll().readableBytes());
+		assertEquals(2, queue.getLastPolledStreamNumber());
+		assertEquals(5, queue.getLastPolledPayloadProtocolId());
+		assertTrue(queue.isLastPolledComplete());
+		assertFalse(queue.isLastPolledUnordered());
+		assertNull(queue.poll());
+	}
+
+	@Test(groups = { "functional", "txqueue" })
+	public void testConcurrentProducers() throws Exception {
+		final int producers = 4;
+		final int perProducer = 20000;
+		final TxQueue queue = new TxQueue(64, 1000000);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+
+		Thread[] threads = new Thread[producers];
+		for (int i = 0; i < producers; i++) {
+			final int producer = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < perProducer; j++) {
+						PayloadData payloadData = createPayload(8, producer * perProducer + j);
+						while (!queue.offer(payloadData)) {
+							Thread.yield();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		startLatch.countDown();
+
+		// messages of each producer must come in order
+		int[] next = new int[producers];
+		int received = 0;
+		while (received < producers * perProducer) {
+			ByteBuf byteBuf = queue.poll();
+			if (byteBuf == null) {
+				Thread.yield();
+				continue;
+			}
+			int id = this.getId(byteBuf);
+			int producer = id / perProducer;
+			assertEquals(producer * perProducer + next[producer], id);
+			next[producer]++;
+			received++;
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getBytes());
+	}
+}
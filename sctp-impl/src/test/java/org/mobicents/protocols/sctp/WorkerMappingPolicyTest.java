@@ -0,0 +1,172 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the built-in stream to DispatchLane mapping policies
+ * 
+ */
+public class WorkerMappingPolicyTest {
+
+	private DispatchLane[] createLanes(int count) {
+		DispatchLane[] lanes = new DispatchLane[count];
+		for (int i = 0; i < count; i++) {
+			lanes[i] = new DispatchLane("WorkerMappingPolicyTest-" + i, 16, WaitStrategy.BLOCKING);
+		}
+		return lanes;
+	}
+
+	private AssociationImpl createAssociation(String name) throws Exception {
+		return new AssociationImpl("127.0.0.1", 2905, "server", name, IpChannelType.TCP);
+	}
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testRoundRobin() throws Exception {
+		DispatchLane[] lanes = this.createLanes(3);
+		WorkerMappingPolicy policy = new RoundRobinWorkerMappingPolicy();
+		AssociationImpl association = this.createAssociation("a1");
+
+		for (int i = 0; i < 9; i++) {
+			assertEquals(i % 3, policy.selectLane(association, i, lanes));
+		}
+	}
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testHash() throws Exception {
+		DispatchLane[] lanes = this.createLanes(4);
+		WorkerMappingPolicy policy = new HashWorkerMappingPolicy();
+
+		// same Association name and stream always map to the same lane
+		for (int i = 0; i < 16; i++) {
+			assertEquals(policy.selectLane(this.createAssociation("a1"), i, lanes),
+					policy.selectLane(this.createAssociation("a1"), i, lanes));
+		}
+
+		int[] counts = new int[lanes.length];
+		for (int i = 0; i < 16; i++) {
+			counts[policy.selectLane(this.createAssociation("a1"), i, lanes)]++;
+		}
+		for (int i = 0; i < lanes.length; i++) {
+			assertEquals(4, counts[i]);
+		}
+	}
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testHashAnonymous() throws Exception {
+		DispatchLane[] lanes = this.createLanes(4);
+		WorkerMappingPolicy policy = new HashWorkerMappingPolicy();
+
+		// ANONYMOUS_SERVER Associations have no name
+		AssociationImpl association = new AssociationImpl("127.0.0.1", 40000, "server", IpChannelType.TCP, null);
+		for (int i = 0; i < 16; i++) {
+			int lane = policy.selectLane(association, i, lanes);
+			assertTrue(lane >= 0 && lane < lanes.length);
+			assertEquals(lane, policy.selectLane(association, i, lanes));
+		}
+	}
+
+	@Test(groups = { "functional", "dispatch" })
+	public void testLeastLoaded() throws Exception {
+		DispatchLane[] lanes = this.createLanes(3);
+		WorkerMappingPolicy policy = new LeastLoadedWorkerMappingPolicy();
+		AssociationImpl association = this.createAssociation("a1");
+
+		// idle lanes are filled evenly
+		lanes[0].addMappedStream();
+		lanes[0].addMappedStream();
+		lanes[1].addMappedStream();
+		assertEquals(2, policy.selectLane(association, 0, lanes));
+		lanes[2].addMappedStream();
+		assertEquals(1, policy.selectLane(association, 1, lanes));
+
+		// a lane with queued messages is avoided even if it has fewer
+		// streams
+		lanes[2].removeMappedStream();
+		lanes[2].removeMappedStream();
+		final CountDownLatch release = new CountDownLatch(1);
+		AssociationImpl busy = this.createAssociation("busy");
+		busy.setAssociationListener(new BlockingListener(release));
+		lanes[2].start();
+		try {
+			lanes[2].publish(busy, new PayloadData(1, new byte[1], true, false, 0, 0));
+			lanes[2].publish(busy, new PayloadData(1, new byte[1], true, false, 0, 0));
+			for (int i = 0; i < 100 && lanes[2].size() != 1; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, lanes[2].size());
+			assertEquals(1, policy.selectLane(association, 2, lanes));
+		} finally {
+			release.countDown();
+			lanes[2].stop(1000);
+		}
+	}
+
+	private class BlockingListener implements AssociationListener {
+
+		private final CountDownLatch release;
+
+		BlockingListener(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			try {
+				this.release.await();
+			} catch (InterruptedException e) {
+			}
+		}
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}
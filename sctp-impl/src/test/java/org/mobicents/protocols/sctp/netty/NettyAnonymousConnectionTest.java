@@ -38,6 +38,7 @@ import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.PayloadData;
 import org.mobicents.protocols.api.Server;
 import org.mobicents.protocols.api.ServerListener;
+import org.mobicents.protocols.sctp.FixedDelayReconnectPolicy;
 import org.mobicents.protocols.sctp.SctpTransferTest;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -101,18 +102,21 @@ public class NettyAnonymousConnectionTest implements ServerListener {
 //        this.management.setSingleThread(true);
         this.management.start();
         this.management.setConnectDelay(CONNECT_DELAY);// Try connecting every x secs
+        this.management.setReconnectPolicy(new FixedDelayReconnectPolicy());
         this.management.removeAllResourses();
 
         this.management2 = new NettySctpManagementImpl("server-management2");
 //        this.management2.setSingleThread(true);
         this.management2.start();
         this.management2.setConnectDelay(CONNECT_DELAY);// Try connecting every x secs
+        this.management2.setReconnectPolicy(new FixedDelayReconnectPolicy());
         this.management2.removeAllResourses();
 
         this.management3 = new NettySctpManagementImpl("server-management3");
 //        this.management3.setSingleThread(true);
         this.management3.start();
         this.management3.setConnectDelay(CONNECT_DELAY);// Try connecting every x secs
+        this.management3.setReconnectPolicy(new FixedDelayReconnectPolicy());
         this.management3.removeAllResourses();
 
         this.server = (NettyServerImpl) this.management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT, ipChannelType, true,
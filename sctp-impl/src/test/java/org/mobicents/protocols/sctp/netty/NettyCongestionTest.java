@@ -0,0 +1,168 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.AssociationWritabilityListener;
+import org.mobicents.protocols.api.CongestionListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Congestion levels of a Netty Association sending to a peer which does not
+ * read. The levels follow the bytes pending in the channel outbound buffer and
+ * CongestionListeners are notified of real changes only. The Association
+ * listener is notified when the channel gets unwritable.
+ */
+public class NettyCongestionTest {
+
+	private static final String SERVER_HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 2357;
+
+	private static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+	private static final String CLIENT_HOST = "127.0.0.1";
+	private static final int CLIENT_PORT = 2358;
+
+	private static final int MESSAGE_LENGTH = 4096;
+	private static final long MAX_SENT_BYTES = 256 * 1024 * 1024;
+
+	private final List<int[]> levelChanges = new CopyOnWriteArrayList<int[]>();
+	private final List<Boolean> writabilityChanges = new CopyOnWriteArrayList<Boolean>();
+	private final Semaphore clientAssocUp = new Semaphore(0);
+
+	@Test(groups = { "functional", "tcp" })
+	public void testCongestionLevelsTcp() throws Exception {
+		ServerSocket serverSocket = new ServerSocket();
+		serverSocket.setReceiveBufferSize(4096);
+		serverSocket.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
+
+		NettySctpManagementImpl management = new NettySctpManagementImpl("NettyCongestionTest");
+		management.start();
+		management.removeAllResourses();
+		management.addCongestionListener(new TestCongestionListener());
+
+		Socket peer = null;
+		try {
+			Association association = management.addAssociation(CLIENT_HOST, CLIENT_PORT, SERVER_HOST, SERVER_PORT,
+					CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+			association.setAssociationListener(new ClientAssociationListener());
+			management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+			// the peer is accepted and never read
+			peer = serverSocket.accept();
+			assertTrue(this.clientAssocUp.tryAcquire(10, TimeUnit.SECONDS));
+
+			byte[] data = new byte[MESSAGE_LENGTH];
+			long sentBytes = 0;
+			while (association.getCongestionLevel() < 3 && sentBytes < MAX_SENT_BYTES) {
+				association.send(new PayloadData(data.length, data, true, false, 0, 0));
+				sentBytes += data.length;
+			}
+			assertEquals(3, association.getCongestionLevel());
+			assertFalse(association.isWritable());
+			for (int i = 0; i < 100 && this.writabilityChanges.isEmpty(); i++) {
+				Thread.sleep(100);
+			}
+			assertEquals(Boolean.FALSE, this.writabilityChanges.get(0));
+
+			// dropping the peer drops the pending data and the congestion
+			peer.setSoLinger(true, 0);
+			peer.close();
+			for (int i = 0; i < 100 && association.getCongestionLevel() != 0; i++) {
+				Thread.sleep(100);
+			}
+			assertEquals(0, association.getCongestionLevel());
+
+			// each notification is a real change continuing the previous one
+			int level = 0;
+			for (int[] change : this.levelChanges) {
+				assertEquals(level, change[0]);
+				assertTrue(change[1] != change[0]);
+				level = change[1];
+			}
+			assertEquals(0, level);
+
+			management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+			management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		} finally {
+			if (peer != null)
+				peer.close();
+			serverSocket.close();
+			management.stop();
+		}
+	}
+
+	private class TestCongestionListener implements CongestionListener {
+
+		@Override
+		public void onCongLevelChanged(Association association, int oldLevel, int newLevel) {
+			levelChanges.add(new int[] { oldLevel, newLevel });
+		}
+	}
+
+	private class ClientAssociationListener implements AssociationListener, AssociationWritabilityListener {
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			clientAssocUp.release();
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+
+		@Override
+		public void onWritabilityChanged(Association association, boolean writable) {
+			writabilityChanges.add(writable);
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.sctp.SctpTransferTest;
+import org.mobicents.protocols.sctp.SigtranMessageFramer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Message rate and one way latency of Associations over loopback. Compares the
+ * NettyTcpTransports available on this host and the ways of sending. Not a
+ * part of the functional suite, run it with the "performance" group.
+ */
+public class NettyLoopbackBenchmark {
+
+	private static final Logger logger = Logger.getLogger(NettyLoopbackBenchmark.class);
+
+	private static final String SERVER_NAME = "benchmarkserver";
+	private static final String SERVER_HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 2355;
+
+	private static final String SERVER_ASSOCIATION_NAME = "serverAssociation";
+	private static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+
+	private static final String CLIENT_HOST = "127.0.0.1";
+	private static final int CLIENT_PORT = 2356;
+
+	// M3UA sized messages: the 8 byte SIGTRAN common header, the send time and padding
+	private static final int MESSAGE_LENGTH = 64;
+	private static final int WARMUP_COUNT = 20000;
+	private static final int THROUGHPUT_COUNT = 200000;
+	private static final int LATENCY_COUNT = 20000;
+	private static final int BATCH_SIZE = 100;
+
+	private enum SendMode {
+		// Association.send(PayloadData), a flush per message
+		SEND,
+		// Association.send(Collection), a flush per BATCH_SIZE messages
+		BATCH,
+		// Association.send(PayloadData) with flush consolidation
+		CONSOLIDATED,
+		// Association.send(ByteBuf, ...) without a PayloadData per message
+		BYTEBUF
+	}
+
+	private NettySctpManagementImpl management;
+	private NettyAssociationImpl clientAssociation;
+
+	private final Semaphore serverAssocUp = new Semaphore(0);
+	private final Semaphore clientAssocUp = new Semaphore(0);
+	private final Semaphore received = new Semaphore(0);
+
+	private volatile CountDownLatch receivedAll;
+	private volatile long[] latencies;
+	private volatile int latencyCount;
+
+	private Level stackLogLevel;
+
+	@BeforeClass(alwaysRun = true)
+	public void setUpClass() throws Exception {
+		// logging of each message would be measured otherwise
+		Logger stackLogger = Logger.getLogger("org.mobicents.protocols.sctp");
+		this.stackLogLevel = stackLogger.getLevel();
+		stackLogger.setLevel(Level.INFO);
+	}
+
+	@AfterClass(alwaysRun = true)
+	public void tearDownClass() throws Exception {
+		Logger.getLogger("org.mobicents.protocols.sctp").setLevel(this.stackLogLevel);
+	}
+
+	@Test(groups = { "performance", "tcp" })
+	public void testTcpTransports() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (NettyTcpTransport tcpTransport : new NettyTcpTransport[] { NettyTcpTransport.NIO, NettyTcpTransport.EPOLL }) {
+			String result = this.runBenchmark(IpChannelType.TCP, tcpTransport, SendMode.SEND);
+			sb.append("\n").append(tcpTransport).append(": ").append(result);
+		}
+		logger.info("TCP transport benchmark over loopback" + sb);
+	}
+
+	@Test(groups = { "performance", "tcp" })
+	public void testSendModesTcp() throws Exception {
+		this.testSendModes(IpChannelType.TCP);
+	}
+
+	@Test(groups = { "performance", "sctp" })
+	public void testSendModesSctp() throws Exception {
+		if (SctpTransferTest.checkSctpEnabled())
+			this.testSendModes(IpChannelType.SCTP);
+	}
+
+	private void testSendModes(IpChannelType ipChannelType) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (SendMode sendMode : SendMode.values()) {
+			String result = this.runBenchmark(ipChannelType, NettyTcpTransport.AUTO, sendMode);
+			sb.append("\n").append(sendMode).append(": ").append(result);
+		}
+		logger.info(ipChannelType + " send mode benchmark over loopback" + sb);
+	}
+
+	private String runBenchmark(IpChannelType ipChannelType, NettyTcpTransport tcpTransport, SendMode sendMode)
+			throws Exception {
+		this.management = new NettySctpManagementImpl("netty-benchmark-management");
+		this.management.setMessageFramer(new SigtranMessageFramer());
+		this.management.setTcpTransport(tcpTransport);
+		this.management.start();
+		this.management.removeAllResourses();
+		this.management.setFlushConsolidation(sendMode == SendMode.CONSOLIDATED);
+
+		try {
+			if (tcpTransport != NettyTcpTransport.AUTO && this.management.getActiveTcpTransport() != tcpTransport)
+				return "not available";
+
+			this.management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT, ipChannelType, false, 0, null);
+			NettyAssociationImpl serverAssociation = (NettyAssociationImpl) this.management.addServerAssociation(CLIENT_HOST,
+					CLIENT_PORT, SERVER_NAME, SERVER_ASSOCIATION_NAME, ipChannelType);
+			this.clientAssociation = (NettyAssociationImpl) this.management.addAssociation(CLIENT_HOST, CLIENT_PORT,
+					SERVER_HOST, SERVER_PORT, CLIENT_ASSOCIATION_NAME, ipChannelType, null);
+			serverAssociation.setAssociationListener(new BenchmarkAssociationListener(this.serverAssocUp));
+			this.clientAssociation.setAssociationListener(new BenchmarkAssociationListener(this.clientAssocUp));
+
+			this.management.startServer(SERVER_NAME);
+			this.management.startAssociation(SERVER_ASSOCIATION_NAME);
+			this.management.startAssociation(CLIENT_ASSOCIATION_NAME);
+			assertTrue(this.serverAssocUp.tryAcquire(30, TimeUnit.SECONDS));
+			assertTrue(this.clientAssocUp.tryAcquire(30, TimeUnit.SECONDS));
+
+			this.sendBurst(WARMUP_COUNT, sendMode);
+
+			long start = System.nanoTime();
+			this.sendBurst(THROUGHPUT_COUNT, sendMode);
+			long rate = THROUGHPUT_COUNT * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+
+			// one message in flight at a time, so the latency does not include queueing behind earlier messages
+			this.latencies = new long[LATENCY_COUNT];
+			this.latencyCount = 0;
+			for (int i = 0; i < LATENCY_COUNT; i++) {
+				this.clientAssociation.send(this.createMessage());
+				assertTrue(this.received.tryAcquire(10, TimeUnit.SECONDS));
+			}
+			long[] sorted = Arrays.copyOf(this.latencies, this.latencyCount);
+			this.latencies = null;
+			Arrays.sort(sorted);
+
+			return String.format("%d msg/s, one way latency p50=%d us p99=%d us", rate,
+					TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length / 2]),
+					TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length * 99 / 100]));
+		} finally {
+			this.management.removeAllResourses();
+			this.management.setFlushConsolidation(false);
+			this.management.stop();
+			this.management.setMessageFramer(null);
+		}
+	}
+
+	private void sendBurst(int count, SendMode sendMode) throws Exception {
+		this.receivedAll = new CountDownLatch(count);
+		if (sendMode == SendMode.BATCH) {
+			List<PayloadData> batch = new ArrayList<PayloadData>(BATCH_SIZE);
+			for (int i = 0; i < count; i++) {
+				batch.add(this.createMessage());
+				if (batch.size() == BATCH_SIZE || i == count - 1) {
+					this.clientAssociation.send(batch);
+					batch.clear();
+				}
+			}
+		} else if (sendMode == SendMode.BYTEBUF) {
+			for (int i = 0; i < count; i++) {
+				this.clientAssociation.send(this.createByteBuf(), 1, 3, false);
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				this.clientAssociation.send(this.createMessage());
+			}
+		}
+		assertTrue(this.receivedAll.await(60, TimeUnit.SECONDS));
+		this.receivedAll = null;
+	}
+
+	private PayloadData createMessage() throws Exception {
+		return new PayloadData(MESSAGE_LENGTH, this.createByteBuf(), true, false, 3, 1);
+	}
+
+	private ByteBuf createByteBuf() throws Exception {
+		ByteBuf byteBuf = this.clientAssociation.getByteBufAllocator().buffer(MESSAGE_LENGTH);
+		byteBuf.writeByte(SigtranMessageFramer.VERSION);
+		byteBuf.writeByte(0);
+		byteBuf.writeByte(1);
+		byteBuf.writeByte(1);
+		byteBuf.writeInt(MESSAGE_LENGTH);
+		byteBuf.writeLong(System.nanoTime());
+		byteBuf.writeZero(MESSAGE_LENGTH - byteBuf.writerIndex());
+		return byteBuf;
+	}
+
+	private class BenchmarkAssociationListener implements AssociationListener {
+
+		private final Semaphore up;
+
+		public BenchmarkAssociationListener(Semaphore up) {
+			this.up = up;
+		}
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			this.up.release();
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			ByteBuf byteBuf = payloadData.getByteBuf();
+			long latency = System.nanoTime() - byteBuf.getLong(byteBuf.readerIndex() + SigtranMessageFramer.HEADER_LENGTH);
+			byteBuf.release();
+
+			CountDownLatch receivedAll = NettyLoopbackBenchmark.this.receivedAll;
+			long[] latencies = NettyLoopbackBenchmark.this.latencies;
+			if (receivedAll != null) {
+				receivedAll.countDown();
+			} else if (latencies != null) {
+				latencies[latencyCount++] = latency;
+				received.release();
+			}
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}
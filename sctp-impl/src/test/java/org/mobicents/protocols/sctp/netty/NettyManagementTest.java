@@ -94,6 +94,98 @@ public class NettyManagementTest {
         this.testServerByProtocol(IpChannelType.TCP);
     }
 
+    /**
+     * Test the EventLoopGroup thread counts. They can be updated only when the stack is not running and the updated
+     * values are persisted at the start
+     *
+     * @throws Exception
+     */
+    @Test(groups = { "functional", "tcp" })
+    public void testEventLoopGroupThreadCounts() throws Exception {
+        NettySctpManagementImpl management = new NettySctpManagementImpl("ManagementTestThreadCounts");
+        management.setBossGroupThreadCount(2);
+        management.setWorkerGroupThreadCount(3);
+        management.start();
+
+        try {
+            management.setWorkerGroupThreadCount(4);
+            fail("Expected Exception");
+        } catch (Exception e) {
+            assertEquals("WorkerGroupThreadCount parameter can be updated only when SCTP stack is NOT running",
+                    e.getMessage());
+        }
+        management.stop();
+
+        management = new NettySctpManagementImpl("ManagementTestThreadCounts");
+        management.start();
+        assertEquals(2, management.getBossGroupThreadCount());
+        assertEquals(3, management.getWorkerGroupThreadCount());
+        management.stop();
+
+        management.setBossGroupThreadCount(1);
+        management.setWorkerGroupThreadCount(0);
+        management.start();
+        assertEquals(1, management.getBossGroupThreadCount());
+        assertEquals(0, management.getWorkerGroupThreadCount());
+        management.stop();
+    }
+
+    /**
+     * Test a TCP Server with several acceptors and a configured backlog. The Server must bind again after stop, so
+     * all its listening channels are closed. The acceptor count and the backlog are persisted
+     * 
+     * @throws Exception
+     */
+    @Test(groups = { "functional", "tcp" })
+    public void testServerTcpAcceptors() throws Exception {
+        NettySctpManagementImpl management = new NettySctpManagementImpl("ManagementTestAcceptors");
+        management.setTcpServerAcceptorCount(4);
+        management.setOptionSoBacklog(256);
+
+        try {
+            management.setTcpServerAcceptorCount(0);
+            fail("Expected Exception");
+        } catch (Exception e) {
+            assertEquals("TcpServerAcceptorCount must be greater than 0", e.getMessage());
+        }
+        assertEquals(4, management.getTcpServerAcceptorCount());
+
+        management.start();
+        management.stop();
+
+        management = new NettySctpManagementImpl("ManagementTestAcceptors");
+        management.start();
+        management.removeAllResourses();
+        assertEquals(4, management.getTcpServerAcceptorCount());
+        assertEquals(256, management.getOptionSoBacklog());
+
+        try {
+            management.setOptionSoBacklog(512);
+            fail("Expected Exception");
+        } catch (Exception e) {
+            assertEquals("OptionSoBacklog parameter can be updated only when SCTP stack is NOT running", e.getMessage());
+        }
+
+        NettyServerImpl server = (NettyServerImpl) management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT,
+                IpChannelType.TCP, false, 0, null);
+
+        for (int i = 0; i < 2; i++) {
+            management.startServer(SERVER_NAME);
+            assertTrue(server.isStarted());
+            assertTrue(server.getIpChannel().isActive());
+
+            management.stopServer(SERVER_NAME);
+            assertFalse(server.isStarted());
+            assertFalse(server.getIpChannel().isOpen());
+
+            // the JDK releases the port of a closed channel once its Selector has deregistered it
+            Thread.sleep(100);
+        }
+
+        management.removeServer(SERVER_NAME);
+        management.stop();
+    }
+
     private void testServerByProtocol(IpChannelType ipChannelType) throws Exception {
         NettySctpManagementImpl management = new NettySctpManagementImpl("ManagementTest");
 //        management.setSingleThread(true);
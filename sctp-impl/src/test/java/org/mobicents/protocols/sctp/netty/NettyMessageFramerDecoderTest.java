@@ -0,0 +1,101 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+
+import java.util.Arrays;
+
+import org.mobicents.protocols.sctp.SigtranMessageFramer;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of NettyMessageFramerDecoder with the SigtranMessageFramer
+ * 
+ */
+public class NettyMessageFramerDecoderTest {
+
+    private static byte[] createMessage(int length, int number) {
+        byte[] data = new byte[length];
+        data[0] = 1;
+        data[2] = 1;
+        data[3] = 1;
+        data[4] = (byte) (length >> 24);
+        data[5] = (byte) (length >> 16);
+        data[6] = (byte) (length >> 8);
+        data[7] = (byte) length;
+        Arrays.fill(data, 8, length, (byte) number);
+        return data;
+    }
+
+    @Test(groups = { "functional", "tcp" })
+    public void testSplitAndMerged() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyMessageFramerDecoder(new SigtranMessageFramer()));
+
+        byte[] m1 = createMessage(100, 1);
+        byte[] m2 = createMessage(8, 2);
+        byte[] m3 = createMessage(300, 3);
+        byte[] stream = new byte[m1.length + m2.length + m3.length];
+        System.arraycopy(m1, 0, stream, 0, m1.length);
+        System.arraycopy(m2, 0, stream, m1.length, m2.length);
+        System.arraycopy(m3, 0, stream, m1.length + m2.length, m3.length);
+
+        // header of m1 split, m1 end + m2 + head of m3 merged, rest of m3
+        channel.writeInbound(Unpooled.wrappedBuffer(stream, 0, 5));
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.wrappedBuffer(stream, 5, 150));
+        this.assertMessage(m1, channel.readInbound());
+        this.assertMessage(m2, channel.readInbound());
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.wrappedBuffer(stream, 155, stream.length - 155));
+        this.assertMessage(m3, channel.readInbound());
+        assertNull(channel.readInbound());
+
+        channel.finish();
+    }
+
+    @Test(groups = { "functional", "tcp" })
+    public void testCorrupted() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyMessageFramerDecoder(new SigtranMessageFramer()));
+
+        byte[] data = createMessage(100, 1);
+        data[0] = 2;
+        try {
+            channel.writeInbound(Unpooled.wrappedBuffer(data));
+            fail("DecoderException expected");
+        } catch (DecoderException e) {
+        }
+    }
+
+    private void assertMessage(byte[] expected, Object msg) {
+        ByteBuf byteBuf = (ByteBuf) msg;
+        byte[] data = new byte[byteBuf.readableBytes()];
+        byteBuf.readBytes(data);
+        byteBuf.release();
+        assertTrue(Arrays.equals(expected, data));
+    }
+}
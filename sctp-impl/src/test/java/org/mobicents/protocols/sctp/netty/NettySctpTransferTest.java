@@ -20,6 +20,8 @@
 
 package org.mobicents.protocols.sctp.netty;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -83,6 +85,10 @@ public class NettySctpTransferTest {
 	}
 
 	public void setUp(IpChannelType ipChannelType) throws Exception {
+		this.setUp(ipChannelType, NettyTcpTransport.AUTO);
+	}
+
+	public void setUp(IpChannelType ipChannelType, NettyTcpTransport tcpTransport) throws Exception {
 	    this.clientMaxInboundStreams = 0;
 		this.serverMaxOutboundStreams = 0;
 		
@@ -97,6 +103,7 @@ public class NettySctpTransferTest {
 
 		this.management = new NettySctpManagementImpl("netty-server-management");
 //		this.management.setSingleThread(true);
+		this.management.setTcpTransport(tcpTransport);
 		this.management.start();
         this.management.setConnectDelay(10000);// Try connecting every 10 secs
 		this.management.removeAllResourses();
@@ -133,12 +140,30 @@ public class NettySctpTransferTest {
 	//TODO
     @Test(groups = { "functional", "tcp" })
     public void testDataTransferTcp() throws Exception {
-        this.testDataTransferByProtocol(IpChannelType.TCP);
+        this.testDataTransferByProtocol(IpChannelType.TCP, NettyTcpTransport.AUTO);
+    }
+
+    /**
+     * The same data exchange over TCP with the JDK NIO transport forced
+     */
+    @Test(groups = { "functional", "tcp" })
+    public void testDataTransferTcpNio() throws Exception {
+        this.testDataTransferByProtocol(IpChannelType.TCP, NettyTcpTransport.NIO);
     }
 
 	private void testDataTransferByProtocol(IpChannelType ipChannelType) throws Exception {
+		this.testDataTransferByProtocol(ipChannelType, NettyTcpTransport.AUTO);
+	}
+
+	private void testDataTransferByProtocol(IpChannelType ipChannelType, NettyTcpTransport tcpTransport) throws Exception {
+
+		this.setUp(ipChannelType, tcpTransport);
 
-		this.setUp(ipChannelType);
+		// AUTO resolves to EPOLL or to NIO where the native transport is not usable
+		if (tcpTransport == NettyTcpTransport.NIO)
+			assertEquals(NettyTcpTransport.NIO, this.management.getActiveTcpTransport());
+		else
+			assertNotNull(this.management.getActiveTcpTransport());
 
         this.management.startServer(SERVER_NAME);
 
@@ -0,0 +1,160 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Delivery of received data by the worker executors when the Netty stack is
+ * not in single thread mode. A peer writes a sequence of ints which must
+ * arrive in order out of the EventLoop, while reading is paused and resumed
+ * for the small worker queue.
+ */
+public class NettyWorkerExecutorTest {
+
+	private static final String SERVER_HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 2359;
+
+	private static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+	private static final String CLIENT_HOST = "127.0.0.1";
+	private static final int CLIENT_PORT = 2360;
+
+	private static final int INT_COUNT = 1024 * 1024;
+
+	private final Semaphore clientAssocUp = new Semaphore(0);
+	private final Semaphore received = new Semaphore(0);
+
+	private volatile String deliveryThreadName;
+	private volatile String error;
+
+	@Test(groups = { "functional", "tcp" })
+	public void testWorkerExecutorTcp() throws Exception {
+		ServerSocket serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
+
+		NettySctpManagementImpl management = new NettySctpManagementImpl("NettyWorkerExecutorTest");
+		management.setSingleThread(false);
+		management.setWorkerThreads(4);
+		management.setWorkerQueueMaxMessages(4);
+		management.start();
+		management.removeAllResourses();
+
+		Socket peer = null;
+		try {
+			assertFalse(management.isSingleThread());
+			assertEquals(4, management.getWorkerThreads());
+
+			Association association = management.addAssociation(CLIENT_HOST, CLIENT_PORT, SERVER_HOST, SERVER_PORT,
+					CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+			association.setAssociationListener(new ClientAssociationListener());
+			management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+			peer = serverSocket.accept();
+			assertTrue(this.clientAssocUp.tryAcquire(10, TimeUnit.SECONDS));
+
+			OutputStream out = peer.getOutputStream();
+			DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+			for (int i = 0; i < INT_COUNT; i++) {
+				dataOut.writeInt(i);
+			}
+			dataOut.flush();
+
+			assertTrue(this.received.tryAcquire(60, TimeUnit.SECONDS));
+			assertNull(this.error);
+			assertTrue(this.deliveryThreadName, this.deliveryThreadName.startsWith("Sctp-WorkerExecutorGroup-"));
+
+			management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+			management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		} finally {
+			if (peer != null)
+				peer.close();
+			serverSocket.close();
+			management.stop();
+		}
+	}
+
+	private class ClientAssociationListener implements AssociationListener {
+
+		// the received ints may be split over the messages
+		private int next = 0;
+		private int partial = 0;
+		private int partialBytes = 0;
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			clientAssocUp.release();
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			deliveryThreadName = Thread.currentThread().getName();
+			byte[] data = payloadData.getData();
+			for (byte b : data) {
+				this.partial = (this.partial << 8) | (b & 0xff);
+				if (++this.partialBytes < 4)
+					continue;
+
+				if (this.partial != this.next && error == null)
+					error = String.format("Expected %d but received %d", this.next, this.partial);
+				this.next++;
+				this.partial = 0;
+				this.partialBytes = 0;
+			}
+			if (this.next == INT_COUNT)
+				received.release();
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}